@@ -0,0 +1,98 @@
+package org.objectstyle.ashwood.test;
+
+import java.util.*;
+import org.objectstyle.ashwood.graph.*;
+
+public class BipartiteMatchingTest {
+  static final int ROUNDS = 2000;
+  static final int MAX_SIDE = 8;
+
+  public static void main(String[] args) {
+    Random random = new Random(24);
+    for (int i = 0; i < ROUNDS; i++) testRandomDigraph(random, i);
+    testMixedVertex();
+    System.out.println("Bye-bye!");
+  }
+
+  static void testRandomDigraph(Random random, int round) {
+    int leftCount = 1 + random.nextInt(MAX_SIDE);
+    int rightCount = 1 + random.nextInt(MAX_SIDE);
+    boolean[][] arcs = new boolean[leftCount][rightCount];
+    Digraph digraph = new MapDigraph(MapDigraph.HASHMAP_FACTORY, true);
+    int size = random.nextInt(3 * leftCount + 1);
+    for (int i = 0; i < size; i++) {
+      int u = random.nextInt(leftCount);
+      int v = random.nextInt(rightCount);
+      arcs[u][v] = true;
+      digraph.putArc("L" + u, "R" + v, Boolean.TRUE);
+    }
+    BipartiteMatching matching = new BipartiteMatching(digraph);
+    checkMatching(matching, digraph, maximumMatching(arcs), round + " cold");
+
+    //change a few arcs and warm start from the old matching, spiced with
+    //pairs that are not arcs or that conflict with other pairs
+    Map initial = new HashMap(matching.getMatching());
+    for (int i = 0; i < 3; i++) {
+      int u = random.nextInt(leftCount);
+      int v = random.nextInt(rightCount);
+      if (random.nextBoolean()) {
+        arcs[u][v] = true;
+        digraph.putArc("L" + u, "R" + v, Boolean.TRUE);
+      } else {
+        arcs[u][v] = false;
+        digraph.removeArc("L" + u, "R" + v);
+      }
+    }
+    initial.put("L" + random.nextInt(leftCount), "R" + random.nextInt(rightCount));
+    initial.put("L" + leftCount, "R0");
+    BipartiteMatching warm = new BipartiteMatching(digraph, initial);
+    checkMatching(warm, digraph, maximumMatching(arcs), round + " warm");
+  }
+
+  static void testMixedVertex() {
+    Digraph digraph = new MapDigraph(MapDigraph.HASHMAP_FACTORY, true);
+    digraph.putArc("a", "b", Boolean.TRUE);
+    digraph.putArc("b", "c", Boolean.TRUE);
+    try {
+      new BipartiteMatching(digraph);
+      check(false, "accepted a vertex with incoming and outgoing arcs");
+    } catch (IllegalArgumentException ex) {
+    }
+  }
+
+  static void checkMatching(BipartiteMatching matching, Digraph digraph, int expected, String round) {
+    check(matching.getCardinality() == expected,
+          round + ": cardinality " + matching.getCardinality() + " != " + expected);
+    Map pairs = matching.getMatching();
+    check(pairs.size() == expected, round + ": " + pairs.size() + " pairs");
+    Set rights = new HashSet();
+    for (Iterator i = pairs.entrySet().iterator(); i.hasNext();) {
+      Map.Entry pair = (Map.Entry)i.next();
+      check(digraph.hasArc(pair.getKey(), pair.getValue()), round + ": " + pair + " is not an arc");
+      check(rights.add(pair.getValue()), round + ": " + pair.getValue() + " matched twice");
+      check(pair.getValue().equals(matching.getMate(pair.getKey())), round + ": mate of " + pair.getKey());
+      check(pair.getKey().equals(matching.getMate(pair.getValue())), round + ": mate of " + pair.getValue());
+    }
+  }
+
+  //brute force: tries every way of matching or skipping each left vertex
+  static int maximumMatching(boolean[][] arcs) {
+    return maximumMatching(arcs, 0, new boolean[arcs[0].length]);
+  }
+
+  static int maximumMatching(boolean[][] arcs, int left, boolean[] used) {
+    if (left == arcs.length) return 0;
+    int best = maximumMatching(arcs, left + 1, used);
+    for (int v = 0; v < used.length; v++) {
+      if (!arcs[left][v] || used[v]) continue;
+      used[v] = true;
+      best = Math.max(best, 1 + maximumMatching(arcs, left + 1, used));
+      used[v] = false;
+    }
+    return best;
+  }
+
+  static void check(boolean condition, String message) {
+    if (!condition) throw new IllegalStateException(message);
+  }
+}
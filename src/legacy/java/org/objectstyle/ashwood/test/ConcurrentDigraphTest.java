@@ -0,0 +1,127 @@
+package org.objectstyle.ashwood.test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.objectstyle.ashwood.graph.*;
+
+public class ConcurrentDigraphTest {
+  static final int WRITERS = 16;
+  static final int READERS = 4;
+  static final int VERTICES = 2000;
+  static final int OPERATIONS = 200000;
+
+  public static void main(String[] args) throws Exception {
+    for (int round = 0; round < 5; round++) {
+      testConcurrentInsertion(round);
+      testConcurrentInsertionAndRemoval(round);
+    }
+    System.out.println("Bye-bye!");
+  }
+
+  static void testConcurrentInsertion(final int seed) throws Exception {
+    final ConcurrentDigraph digraph = new ConcurrentDigraph();
+    final Set expectedArcs = Collections.newSetFromMap(new ConcurrentHashMap());
+    final Set expectedVertices = Collections.newSetFromMap(new ConcurrentHashMap());
+    runConcurrently(digraph, new Writer() {
+      public void write(Random random) {
+        Integer origin = new Integer(random.nextInt(VERTICES));
+        Integer dst = new Integer(random.nextInt(VERTICES));
+        digraph.putArc(origin, dst, Boolean.TRUE);
+        expectedArcs.add(origin + "->" + dst);
+        expectedVertices.add(origin);
+        expectedVertices.add(dst);
+      }
+    }, seed);
+    check(digraph.size() == expectedArcs.size(),
+          "size " + digraph.size() + " != " + expectedArcs.size());
+    check(digraph.order() == expectedVertices.size(),
+          "order " + digraph.order() + " != " + expectedVertices.size());
+    checkInvariants(digraph);
+    System.out.println("insertion " + seed + ": order=" + digraph.order() + ", size=" + digraph.size());
+  }
+
+  static void testConcurrentInsertionAndRemoval(final int seed) throws Exception {
+    final ConcurrentDigraph digraph = new ConcurrentDigraph();
+    runConcurrently(digraph, new Writer() {
+      public void write(Random random) {
+        Integer origin = new Integer(random.nextInt(VERTICES / 10));
+        Integer dst = new Integer(random.nextInt(VERTICES / 10));
+        int operation = random.nextInt(12);
+        if (operation == 0) digraph.removeVertex(dst);
+        else if (operation < 4) digraph.removeArc(origin, dst);
+        else digraph.putArc(origin, dst, origin);
+      }
+    }, seed);
+    checkInvariants(digraph);
+    System.out.println("insertion/removal " + seed + ": order=" + digraph.order() + ", size=" + digraph.size());
+  }
+
+  static void checkInvariants(ConcurrentDigraph digraph) {
+    int arcs = GraphUtils.traverse(digraph.arcIterator());
+    check(arcs == digraph.size(), "arcIterator " + arcs + " != size " + digraph.size());
+    int outgoing = 0, incoming = 0, vertices = 0;
+    for (Iterator i = digraph.vertexIterator(); i.hasNext();) {
+      Object vertex = i.next();
+      vertices++;
+      outgoing += digraph.outgoingSize(vertex);
+      incoming += digraph.incomingSize(vertex);
+      for (ArcIterator j = digraph.incomingIterator(vertex); j.hasNext();) {
+        Object arc = j.next();
+        check(arc.equals(digraph.getArc(j.getOrigin(), vertex)), "reverse arc mismatch");
+      }
+    }
+    check(vertices == digraph.order(), "order " + digraph.order() + " != " + vertices);
+    check(outgoing == digraph.size(), "outgoing " + outgoing + " != size " + digraph.size());
+    check(incoming == digraph.size(), "incoming " + incoming + " != size " + digraph.size());
+  }
+
+  static void runConcurrently(final ConcurrentDigraph digraph, final Writer writer, int seed) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+    final CountDownLatch startSignal = new CountDownLatch(1);
+    final CountDownLatch writersDone = new CountDownLatch(WRITERS);
+    List futures = new ArrayList();
+    for (int t = 0; t < WRITERS; t++) {
+      final Random random = new Random(seed * 1000 + t);
+      futures.add(executor.submit(new Callable() {
+        public Object call() throws Exception {
+          startSignal.await();
+          try {
+            for (int i = 0; i < OPERATIONS / WRITERS; i++) writer.write(random);
+          } finally {
+            writersDone.countDown();
+          }
+          return null;
+        }
+      }));
+    }
+    for (int t = 0; t < READERS; t++) {
+      futures.add(executor.submit(new Callable() {
+        public Object call() throws Exception {
+          startSignal.await();
+          while (writersDone.getCount() > 0) {
+            GraphUtils.traverse(digraph.arcIterator());
+            for (Iterator i = digraph.vertexIterator(); i.hasNext();) {
+              Object vertex = i.next();
+              GraphUtils.traverse(digraph.incomingIterator(vertex));
+              GraphUtils.traverse(digraph.outgoingIterator(vertex));
+            }
+            check(digraph.size() >= 0, "negative size");
+          }
+          return null;
+        }
+      }));
+    }
+    startSignal.countDown();
+    for (Iterator i = futures.iterator(); i.hasNext();)
+      ((Future)i.next()).get();
+    executor.shutdown();
+  }
+
+  static void check(boolean condition, String message) {
+    if (!condition) throw new IllegalStateException(message);
+  }
+
+  interface Writer {
+    void write(Random random);
+  }
+}
@@ -0,0 +1,105 @@
+package org.objectstyle.ashwood.test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.objectstyle.ashwood.function.*;
+import org.objectstyle.ashwood.graph.*;
+import org.objectstyle.ashwood.graph.path.*;
+
+/**
+ * Compares DeltaStepping with sequential Dijkstra (ShortestPathSearch) on
+ * road-like grids with random weights and on random sparse digraphs, for
+ * several sizes and bucket widths. Usage: DeltaSteppingBenchmark [threads].
+ */
+public class DeltaSteppingBenchmark {
+  static final int[] SIDES = {100, 300, 1000};
+  static final double[] DELTA_FACTORS = {0.1, 1, 10};
+  static final int RUNS = 5;
+
+  static final DoubleFunction WEIGHT = new DoubleFunction() {
+    public double doubleValue(Object arc) {
+      return ((Double)arc).doubleValue();
+    }
+  };
+
+  public static void main(String[] args) {
+    int threads = (args.length > 0 ? Integer.parseInt(args[0]) :
+                   Runtime.getRuntime().availableProcessors());
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    System.out.println("threads=" + threads);
+    for (int i = 0; i < SIDES.length; i++) {
+      benchmark("grid " + SIDES[i] + "x" + SIDES[i], grid(SIDES[i], new Random(i)), pool);
+      int order = SIDES[i] * SIDES[i];
+      benchmark("random " + order, random(order, 4, new Random(i)), pool);
+    }
+    pool.shutdown();
+    System.out.println("Bye-bye!");
+  }
+
+  static void benchmark(String name, CsrDigraph digraph, ForkJoinPool pool) {
+    Random random = new Random(42);
+    int[] sources = new int[RUNS];
+    for (int i = 0; i < RUNS; i++) sources[i] = random.nextInt(digraph.order());
+
+    ShortestPathSearch dijkstra = new ShortestPathSearch(digraph, WEIGHT);
+    double[][] expected = new double[RUNS][];
+    dijkstra.search(sources[0]);
+    long start = System.nanoTime();
+    for (int i = 0; i < RUNS; i++) expected[i] = (double[])dijkstra.search(sources[i]).clone();
+    long dijkstraTime = (System.nanoTime() - start) / RUNS;
+    System.out.println(name + ": order=" + digraph.order() + ", size=" + digraph.size() +
+                       ", dijkstra " + dijkstraTime / 1000 + "us");
+
+    DeltaStepping deltaStepping = new DeltaStepping(digraph, WEIGHT, pool);
+    double defaultDelta = deltaStepping.getDelta();
+    for (int j = 0; j < DELTA_FACTORS.length; j++) {
+      deltaStepping.setDelta(defaultDelta * DELTA_FACTORS[j]);
+      deltaStepping.search(sources[0]);
+      start = System.nanoTime();
+      for (int i = 0; i < RUNS; i++) {
+        double[] distances = deltaStepping.search(sources[i]);
+        if (!Arrays.equals(distances, expected[i]))
+          throw new RuntimeException(name + ": distances differ from Dijkstra");
+      }
+      long time = (System.nanoTime() - start) / RUNS;
+      System.out.println("  delta=" + deltaStepping.getDelta() + " " + time / 1000 + "us" +
+                         ", speedup " + ((double)dijkstraTime / time));
+    }
+  }
+
+  static CsrDigraph grid(int side, Random random) {
+    Integer[] vertices = vertices(side * side);
+    DigraphBuilder builder = new DigraphBuilder(side * side, 4 * side * side);
+    for (int y = 0; y < side; y++) {
+      for (int x = 0; x < side; x++) {
+        int v = y * side + x;
+        builder.addVertex(vertices[v]);
+        if (x + 1 < side) connect(builder, vertices[v], vertices[v + 1], random);
+        if (y + 1 < side) connect(builder, vertices[v], vertices[v + side], random);
+      }
+    }
+    return builder.toCsrDigraph();
+  }
+
+  static void connect(DigraphBuilder builder, Integer v, Integer w, Random random) {
+    builder.addArc(v, w, new Double(1 + random.nextDouble() * 99));
+    builder.addArc(w, v, new Double(1 + random.nextDouble() * 99));
+  }
+
+  static CsrDigraph random(int order, int degree, Random random) {
+    Integer[] vertices = vertices(order);
+    DigraphBuilder builder = new DigraphBuilder(order, order * degree);
+    for (int v = 0; v < order; v++) builder.addVertex(vertices[v]);
+    for (int i = 0; i < order * degree; i++) {
+      builder.addArc(vertices[random.nextInt(order)], vertices[random.nextInt(order)],
+                     new Double(random.nextDouble() * 100));
+    }
+    return builder.toCsrDigraph();
+  }
+
+  static Integer[] vertices(int order) {
+    Integer[] vertices = new Integer[order];
+    for (int v = 0; v < order; v++) vertices[v] = new Integer(v);
+    return vertices;
+  }
+}
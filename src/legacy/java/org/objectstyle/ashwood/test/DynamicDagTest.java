@@ -0,0 +1,132 @@
+package org.objectstyle.ashwood.test;
+
+import java.util.*;
+import org.objectstyle.ashwood.graph.*;
+
+public class DynamicDagTest {
+  static final int ROUNDS = 500;
+  static final int MAX_ORDER = 30;
+
+  public static void main(String[] args) {
+    Random random = new Random(14);
+    for (int i = 0; i < ROUNDS; i++) {
+      testRandomInsertions(random, i);
+      testWrapping(random, i);
+    }
+    System.out.println("Bye-bye!");
+  }
+
+  static void testRandomInsertions(Random random, int round) {
+    int order = 2 + random.nextInt(MAX_ORDER);
+    boolean[][] arcs = new boolean[order][order];
+    boolean[] present = new boolean[order];
+    DynamicDag dag = new DynamicDag();
+    int rejected = 0;
+    for (int step = 0; step < 4 * order; step++) {
+      int origin = random.nextInt(order);
+      int dst = random.nextInt(order);
+      Integer o = new Integer(origin);
+      Integer d = new Integer(dst);
+      int operation = random.nextInt(20);
+      if (operation == 0) {
+        dag.removeVertex(d);
+        present[dst] = false;
+        for (int v = 0; v < order; v++) arcs[v][dst] = arcs[dst][v] = false;
+        continue;
+      } else if (operation < 3) {
+        dag.removeArc(o, d);
+        arcs[origin][dst] = false;
+        continue;
+      }
+      //brute force: the arc closes a cycle iff origin is reachable from dst
+      boolean cycle = reaches(arcs, dst, origin);
+      if (present[origin] && present[dst])
+        check(dag.wouldCreateCycle(o, d) == cycle,
+              round + ": wouldCreateCycle(" + o + ", " + d + ") != " + cycle);
+      try {
+        dag.putArc(o, d, Boolean.TRUE);
+        check(!cycle, round + ": accepted " + o + " -> " + d + " closing a cycle");
+        arcs[origin][dst] = true;
+      } catch (IllegalArgumentException ex) {
+        check(cycle, round + ": rejected " + o + " -> " + d + ": " + ex.getMessage());
+        rejected++;
+      }
+      //a loop is rejected before its vertex is added
+      if (origin != dst) present[origin] = present[dst] = true;
+      checkOrder(dag, arcs, present, round);
+    }
+    if (round == 0) System.out.println("insertions: " + rejected + " arcs rejected");
+  }
+
+  static void testWrapping(Random random, int round) {
+    int order = 2 + random.nextInt(MAX_ORDER);
+    boolean[][] arcs = new boolean[order][order];
+    Digraph digraph = new MapDigraph(MapDigraph.HASHMAP_FACTORY, true);
+    boolean cyclic = false;
+    for (int i = 0; i < order; i++) {
+      int origin = random.nextInt(order);
+      int dst = random.nextInt(order);
+      cyclic |= reaches(arcs, dst, origin);
+      arcs[origin][dst] = true;
+      digraph.putArc(new Integer(origin), new Integer(dst), Boolean.TRUE);
+    }
+    try {
+      DynamicDag dag = new DynamicDag(digraph);
+      check(!cyclic, round + ": wrapped a cyclic digraph");
+      boolean[] present = new boolean[order];
+      for (Iterator i = digraph.vertexIterator(); i.hasNext();)
+        present[((Integer)i.next()).intValue()] = true;
+      checkOrder(dag, arcs, present, round);
+    } catch (IllegalArgumentException ex) {
+      check(cyclic, round + ": rejected an acyclic digraph");
+    }
+  }
+
+  static void checkOrder(DynamicDag dag, boolean[][] arcs, boolean[] present, int round) {
+    int size = 0;
+    for (int u = 0; u < arcs.length; u++) {
+      for (int v = 0; v < arcs.length; v++) {
+        if (!arcs[u][v]) continue;
+        size++;
+        check(dag.hasArc(new Integer(u), new Integer(v)), round + ": lost arc " + u + " -> " + v);
+        check(dag.topologicalIndex(new Integer(u)) < dag.topologicalIndex(new Integer(v)),
+              round + ": arc " + u + " -> " + v + " against the order");
+      }
+    }
+    check(dag.size() == size, round + ": size " + dag.size() + " != " + size);
+    List order = dag.topologicalOrder();
+    check(order.size() == dag.order(), round + ": order lists " + order.size() + " of " + dag.order());
+    Set seen = new HashSet();
+    for (int i = 0; i < order.size(); i++) {
+      check(seen.add(order.get(i)), round + ": " + order.get(i) + " listed twice");
+      if (i > 0)
+        check(dag.topologicalIndex(order.get(i - 1)) < dag.topologicalIndex(order.get(i)),
+              round + ": ranks not increasing at " + i);
+    }
+    for (int v = 0; v < present.length; v++)
+      if (present[v]) check(dag.topologicalIndex(new Integer(v)) >= 0, round + ": " + v + " has no rank");
+  }
+
+  static boolean reaches(boolean[][] arcs, int from, int to) {
+    boolean[] seen = new boolean[arcs.length];
+    int[] queue = new int[arcs.length];
+    int head = 0, tail = 0;
+    seen[from] = true;
+    queue[tail++] = from;
+    while (head < tail) {
+      int u = queue[head++];
+      if (u == to) return true;
+      for (int v = 0; v < arcs.length; v++) {
+        if (arcs[u][v] && !seen[v]) {
+          seen[v] = true;
+          queue[tail++] = v;
+        }
+      }
+    }
+    return false;
+  }
+
+  static void check(boolean condition, String message) {
+    if (!condition) throw new IllegalStateException(message);
+  }
+}
@@ -0,0 +1,87 @@
+package org.objectstyle.ashwood.test;
+
+import java.util.*;
+import org.objectstyle.ashwood.graph.*;
+import org.objectstyle.ashwood.function.DoubleFunction;
+
+public class MaximumFlowTest {
+  static final int ROUNDS = 2000;
+  static final int MAX_ORDER = 12;
+
+  static final DoubleFunction CAPACITY = new DoubleFunction() {
+    public double doubleValue(Object arc) {
+      return ((Number)arc).doubleValue();
+    }
+  };
+
+  public static void main(String[] args) {
+    Random random = new Random(25);
+    for (int i = 0; i < ROUNDS; i++) testRandomDigraph(random, i);
+    System.out.println("Bye-bye!");
+  }
+
+  static void testRandomDigraph(Random random, int round) {
+    int order = 2 + random.nextInt(MAX_ORDER - 1);
+    double[][] capacities = new double[order][order];
+    Digraph digraph = new MapDigraph(MapDigraph.HASHMAP_FACTORY, true);
+    for (int v = 0; v < order; v++) digraph.addVertex(new Integer(v));
+    int size = random.nextInt(3 * order + 1);
+    for (int i = 0; i < size; i++) {
+      int origin = random.nextInt(order);
+      int dst = random.nextInt(order);
+      double capacity = (random.nextInt(30) == 0 ? Double.POSITIVE_INFINITY : random.nextInt(10));
+      capacities[origin][dst] = capacity;
+      digraph.putArc(new Integer(origin), new Integer(dst), new Double(capacity));
+    }
+    int source = random.nextInt(order);
+    int sink = (source + 1 + random.nextInt(order - 1)) % order;
+    MaximumFlow flow = new MaximumFlow(digraph, CAPACITY, new Integer(source), new Integer(sink));
+
+    //brute force: the cheapest of all cuts separating source from sink
+    double minCut = Double.POSITIVE_INFINITY;
+    boolean[] sourceSide = new boolean[order];
+    for (int subset = 0; subset < (1 << order); subset++) {
+      if ((subset & (1 << source)) == 0 || (subset & (1 << sink)) != 0) continue;
+      for (int v = 0; v < order; v++) sourceSide[v] = (subset & (1 << v)) != 0;
+      minCut = Math.min(minCut, cutCapacity(capacities, sourceSide));
+    }
+    check(flow.getFlowValue() == minCut, round + ": flow " + flow.getFlowValue() + " != min cut " + minCut);
+
+    for (int v = 0; v < order; v++) sourceSide[v] = flow.isOnSourceSide(new Integer(v));
+    check(sourceSide[source] && !sourceSide[sink], round + ": source or sink on the wrong side");
+    check(flow.getSourceSide().size() == count(sourceSide), round + ": getSourceSide() disagrees");
+    check(cutCapacity(capacities, sourceSide) == minCut, round + ": returned cut is not minimal");
+
+    double cutArcs = 0;
+    int cutSize = 0;
+    for (ArcIterator i = flow.cutIterator(); i.hasNext();) {
+      cutArcs += ((Number)i.next()).doubleValue();
+      cutSize++;
+      check(flow.isOnSourceSide(i.getOrigin()) && !flow.isOnSourceSide(i.getDestination()),
+            round + ": cut arc " + i.getOrigin() + " -> " + i.getDestination() + " does not cross");
+    }
+    check(cutSize == flow.getCutSize(), round + ": cut size " + flow.getCutSize() + " != " + cutSize);
+    check(cutArcs == minCut, round + ": cut arcs sum to " + cutArcs);
+  }
+
+  static double cutCapacity(double[][] capacities, boolean[] sourceSide) {
+    double capacity = 0;
+    for (int u = 0; u < sourceSide.length; u++) {
+      if (!sourceSide[u]) continue;
+      for (int v = 0; v < sourceSide.length; v++)
+        if (!sourceSide[v]) capacity += capacities[u][v];
+    }
+    return capacity;
+  }
+
+  static int count(boolean[] flags) {
+    int count = 0;
+    for (int i = 0; i < flags.length; i++)
+      if (flags[i]) count++;
+    return count;
+  }
+
+  static void check(boolean condition, String message) {
+    if (!condition) throw new IllegalStateException(message);
+  }
+}
@@ -0,0 +1,84 @@
+package org.objectstyle.ashwood.test;
+
+import java.util.*;
+import org.objectstyle.ashwood.graph.*;
+
+public class StrongConnectionTest {
+  static final int GRAPHS = 2000;
+  static final int MAX_ORDER = 25;
+  static final int CHAIN_LENGTH = 200000;
+
+  public static void main(String[] args) {
+    Random random = new Random(5);
+    for (int i = 0; i < GRAPHS; i++) testRandomDigraph(random, i);
+    testLongChain();
+    System.out.println("Bye-bye!");
+  }
+
+  static void testRandomDigraph(Random random, int round) {
+    int order = 1 + random.nextInt(MAX_ORDER);
+    boolean[][] reach = new boolean[order][order];
+    Digraph digraph = new MapDigraph();
+    for (int v = 0; v < order; v++) {
+      digraph.addVertex(new Integer(v));
+      reach[v][v] = true;
+    }
+    int size = random.nextInt(2 * order + 1);
+    for (int i = 0; i < size; i++) {
+      int origin = random.nextInt(order);
+      int dst = random.nextInt(order);
+      digraph.putArc(new Integer(origin), new Integer(dst), Boolean.TRUE);
+      reach[origin][dst] = true;
+    }
+    //brute force: transitive closure, then mutual reachability
+    for (int k = 0; k < order; k++)
+      for (int u = 0; u < order; u++)
+        if (reach[u][k])
+          for (int v = 0; v < order; v++)
+            if (reach[k][v]) reach[u][v] = true;
+
+    StrongConnection scc = new StrongConnection(digraph, CollectionFactory.ARRAYLIST_FACTORY);
+    Set covered = new HashSet();
+    Set ids = new HashSet();
+    while (scc.hasNext()) {
+      Collection component = (Collection)scc.next();
+      Integer first = (Integer)component.iterator().next();
+      int id = scc.getComponentId(first);
+      check(ids.add(new Integer(id)), round + ": component id " + id + " reused");
+      int expectedSize = 0;
+      for (int v = 0; v < order; v++)
+        if (reach[first.intValue()][v] && reach[v][first.intValue()]) expectedSize++;
+      check(component.size() == expectedSize,
+            round + ": component of " + first + " has " + component.size() + " vertices, expected " + expectedSize);
+      for (Iterator i = component.iterator(); i.hasNext();) {
+        Integer vertex = (Integer)i.next();
+        int v = vertex.intValue();
+        check(covered.add(vertex), round + ": " + vertex + " in two components");
+        check(reach[first.intValue()][v] && reach[v][first.intValue()],
+              round + ": " + first + " and " + vertex + " are not strongly connected");
+        check(scc.getComponentId(vertex) == id, round + ": component id mismatch for " + vertex);
+      }
+    }
+    check(covered.size() == order, round + ": " + covered.size() + " of " + order + " vertices covered");
+
+    Digraph contracted = new StrongConnection(digraph, CollectionFactory.ARRAYLIST_FACTORY).contract(new MapDigraph());
+    check(contracted.order() == ids.size(), round + ": contracted order " + contracted.order());
+    check(GraphUtils.isAcyclic(contracted), round + ": contracted digraph has a cycle");
+  }
+
+  //a recursive search would overflow the stack here
+  static void testLongChain() {
+    Digraph digraph = new MapDigraph();
+    for (int v = 0; v < CHAIN_LENGTH; v++)
+      digraph.putArc(new Integer(v), new Integer((v + 1) % CHAIN_LENGTH), Boolean.TRUE);
+    StrongConnection scc = new StrongConnection(digraph, CollectionFactory.ARRAYLIST_FACTORY);
+    Collection component = (Collection)scc.next();
+    check(component.size() == CHAIN_LENGTH, "cycle split into " + component.size());
+    check(!scc.hasNext(), "more than one component on a cycle");
+    System.out.println("cycle of " + CHAIN_LENGTH + ": one component");
+  }
+
+  static void check(boolean condition, String message) {
+    if (!condition) throw new IllegalStateException(message);
+  }
+}
@@ -90,7 +90,7 @@ public class RandomSchema {
 	}
 
 	private void generateAcyclicSchema() {
-		Digraph graph = new MapDigraph(MapDigraph.HASHMAP_FACTORY);
+		Digraph graph = new MapDigraph(MapDigraph.HASHMAP_FACTORY, true);
 		Map vertexToTable = new HashMap();
 		GraphUtils.randomizeAcyclic(graph, tableCount, maxForeignKeysPerTable,
 				maxReferencesPerTable, randomizer);
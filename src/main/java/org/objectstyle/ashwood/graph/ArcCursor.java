@@ -0,0 +1,122 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+/**
+ * Reusable cursor over the outgoing (or incoming) neighbours of one vertex
+ * of an IntDigraph. Call reset(vertex) to move it to another vertex
+ * instead of creating a new cursor. On a MatrixDigraph the cursor walks the
+ * row with nextTarget()/nextSource(), so a whole row costs one pass over
+ * its words instead of a select per neighbour; on other digraphs it steps
+ * through target()/source() by position.
+ * <p>
+ * getPosition() and reset(vertex, position) let a depth first search park
+ * the cursor of a vertex on its stack and resume it later.
+ */
+public final class ArcCursor {
+  private IntDigraph digraph;
+  private MatrixDigraph matrix;
+  private boolean incoming;
+  private int vertex = -1;
+  //next position to read: an index, or the next neighbour on a matrix
+  private int position;
+  private int degree;
+
+  public ArcCursor(IntDigraph digraph) {
+    this(digraph, false);
+  }
+
+  public ArcCursor(IntDigraph digraph, boolean incoming) {
+    this.digraph = digraph;
+    this.incoming = incoming;
+    if (digraph instanceof MatrixDigraph) matrix = (MatrixDigraph)digraph;
+  }
+
+  public ArcCursor reset(int vertex) {
+    if (matrix == null) return reset(vertex, 0);
+    this.vertex = vertex;
+    position = neighbourFrom(0);
+    return this;
+  }
+
+  /**
+   * Moves the cursor to the vertex and resumes it at a position obtained
+   * from getPosition().
+   */
+  public ArcCursor reset(int vertex, int position) {
+    this.vertex = vertex;
+    this.position = position;
+    if (matrix == null)
+      degree = (incoming ? digraph.inDegree(vertex) : digraph.outDegree(vertex));
+    return this;
+  }
+
+  public int getVertex() {
+    return vertex;
+  }
+
+  /**
+   * Returns the position at which the cursor would go on.
+   */
+  public int getPosition() {
+    return position;
+  }
+
+  public boolean hasNext() {
+    return (matrix != null ? position >= 0 : position < degree);
+  }
+
+  public int next() {
+    if (!hasNext()) throw new java.util.NoSuchElementException();
+    if (matrix != null) {
+      int neighbour = position;
+      position = neighbourFrom(neighbour + 1);
+      return neighbour;
+    }
+    return (incoming ? digraph.source(vertex, position++) : digraph.target(vertex, position++));
+  }
+
+  private int neighbourFrom(int from) {
+    return (incoming ? matrix.nextSource(vertex, from) : matrix.nextTarget(vertex, from));
+  }
+}
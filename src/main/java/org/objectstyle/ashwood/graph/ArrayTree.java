@@ -0,0 +1,507 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+import java.io.Serializable;
+
+/**
+ * Tree kept in int arrays over the ids of a VertexIndex: the parent of
+ * every vertex, its arc from the parent, and doubly linked sibling lists
+ * holding the children in insertion order. A removed vertex only gets
+ * marked absent; once absent ids outnumber the live ones, removeSubtree
+ * compacts the arrays, so ids are stable only between such compactions.
+ * <p>
+ * Ancestor queries go through a preorder index built on the first query
+ * after a change: preorder numbers, depths and subtree sizes answer
+ * isAncestor, getDepth and getSubtreeSize in O(1), and a sparse table
+ * over the preorder sequence answers lowestCommonAncestor in O(1) after
+ * O(n log n) preprocessing.
+ */
+public class ArrayTree implements Tree, Serializable {
+  private static final int ABSENT = -2;
+  private static final int NONE = -1;
+
+  private VertexIndex vertexIndex;
+  private int root = NONE;
+  private int[] parents;
+  private int[] firstChildren;
+  private int[] lastChildren;
+  private int[] nextSiblings;
+  private int[] previousSiblings;
+  private int[] childCounts;
+  private Object[] arcs;
+  private int order;
+
+  private transient boolean indexed;
+  private transient int[] entries;
+  private transient int[] depths;
+  private transient int[] subtreeSizes;
+  //table[k][i] is the shallowest vertex of preorder positions i..i+2^k-1
+  private transient int[][] table;
+
+  public ArrayTree() {
+    this(16);
+  }
+
+  public ArrayTree(int expectedOrder) {
+    int capacity = Math.max(expectedOrder, 4);
+    vertexIndex = new VertexIndex(capacity);
+    parents = new int[capacity];
+    firstChildren = new int[capacity];
+    lastChildren = new int[capacity];
+    nextSiblings = new int[capacity];
+    previousSiblings = new int[capacity];
+    childCounts = new int[capacity];
+    arcs = new Object[capacity];
+  }
+
+  /**
+   * Makes the vertex the root of an empty tree. Returns false if it is the
+   * root already.
+   *
+   * @throws IllegalStateException if the tree has another root
+   */
+  public boolean setRoot(Object vertex) {
+    if (root != NONE) {
+      if (vertexIndex.vertexAt(root).equals(vertex)) return false;
+      throw new IllegalStateException("Tree already has root " + vertexIndex.vertexAt(root));
+    }
+    root = add(vertex, NONE, null);
+    return true;
+  }
+
+  /**
+   * Appends the child to the children of the parent and returns null, or,
+   * if it is a child of the parent already, replaces its arc and returns
+   * the old one.
+   *
+   * @throws IllegalArgumentException if the parent is not in the tree or
+   * the child is in the tree under another parent
+   */
+  public Object addChild(Object parent, Object child, Object arc) {
+    int p = id(parent);
+    if (p < 0) throw new IllegalArgumentException("Parent " + parent + " is not in the tree.");
+    int c = id(child);
+    if (c >= 0) {
+      if (parents[c] != p)
+        throw new IllegalArgumentException("Vertex " + child + " is in the tree already.");
+      Object oldArc = arcs[c];
+      arcs[c] = arc;
+      return oldArc;
+    }
+    add(child, p, arc);
+    return null;
+  }
+
+  public Object getRoot() {
+    return (root != NONE ? vertexIndex.vertexAt(root) : null);
+  }
+
+  public Object getParent(Object child) {
+    int c = id(child);
+    return (c >= 0 && parents[c] >= 0 ? vertexIndex.vertexAt(parents[c]) : null);
+  }
+
+  public Object getArc(Object parent, Object child) {
+    int c = id(child);
+    if (c < 0 || parents[c] < 0 || !vertexIndex.vertexAt(parents[c]).equals(parent)) return null;
+    return arcs[c];
+  }
+
+  public ArcIterator childIterator(Object parent) {
+    int p = id(parent);
+    if (p < 0) return ArcIterator.EMPTY_ITERATOR;
+    return new ChildIterator(p);
+  }
+
+  /**
+   * Removes the vertex with all its descendants, in amortized time
+   * proportional to their number.
+   */
+  public boolean removeSubtree(Object vertex) {
+    int v = id(vertex);
+    if (v < 0) return false;
+    int p = parents[v];
+    if (p >= 0) {
+      int previous = previousSiblings[v];
+      int next = nextSiblings[v];
+      if (previous >= 0) nextSiblings[previous] = next;
+      else firstChildren[p] = next;
+      if (next >= 0) previousSiblings[next] = previous;
+      else lastChildren[p] = previous;
+      childCounts[p]--;
+    } else root = NONE;
+    clearSubtree(v);
+    indexed = false;
+    if (vertexIndex.size() - order > Math.max(order, 16)) compact();
+    return true;
+  }
+
+  public int order() {
+    return order;
+  }
+
+  public int size() {
+    return Math.max(order - 1, 0);
+  }
+
+  public int childSize(Object parent) {
+    int p = id(parent);
+    return (p >= 0 ? childCounts[p] : 0);
+  }
+
+  public boolean isRoot(Object vertex) {
+    int v = id(vertex);
+    return v >= 0 && v == root;
+  }
+
+  public boolean isLeaf(Object vertex) {
+    int v = id(vertex);
+    return v >= 0 && childCounts[v] == 0;
+  }
+
+  public boolean isChild(Object parent, Object child) {
+    int c = id(child);
+    return c >= 0 && parents[c] >= 0 && vertexIndex.vertexAt(parents[c]).equals(parent);
+  }
+
+  public boolean containsVertex(Object vertex) {
+    return id(vertex) >= 0;
+  }
+
+  public boolean containsAllVertices(Collection vertices) {
+    for (Iterator i = vertices.iterator(); i.hasNext();)
+      if (id(i.next()) < 0) return false;
+    return true;
+  }
+
+  public boolean isEmpty() {
+    return order == 0;
+  }
+
+  /**
+   * Returns the id of the vertex, or -1 if it is not in the tree.
+   */
+  public int id(Object vertex) {
+    int v = vertexIndex.indexOf(vertex);
+    return (v >= 0 && parents[v] != ABSENT ? v : NONE);
+  }
+
+  public Object vertexAt(int id) {
+    return vertexIndex.vertexAt(id);
+  }
+
+  public int parent(int id) {
+    return parents[id];
+  }
+
+  public int firstChild(int id) {
+    return firstChildren[id];
+  }
+
+  public int nextSibling(int id) {
+    return nextSiblings[id];
+  }
+
+  /**
+   * Returns true if the ancestor lies on the path from the root to the
+   * vertex, the vertex itself included.
+   */
+  public boolean isAncestor(Object ancestor, Object vertex) {
+    int a = id(ancestor);
+    int v = id(vertex);
+    return a >= 0 && v >= 0 && isAncestor(a, v);
+  }
+
+  /**
+   * Returns the deepest common ancestor of both vertices, or null if one
+   * of them is not in the tree.
+   */
+  public Object lowestCommonAncestor(Object vertex1, Object vertex2) {
+    int v1 = id(vertex1);
+    int v2 = id(vertex2);
+    if (v1 < 0 || v2 < 0) return null;
+    return vertexIndex.vertexAt(lowestCommonAncestor(v1, v2));
+  }
+
+  /**
+   * Returns the number of arcs between the root and the vertex, or -1 if
+   * it is not in the tree.
+   */
+  public int getDepth(Object vertex) {
+    int v = id(vertex);
+    return (v >= 0 ? depth(v) : -1);
+  }
+
+  /**
+   * Returns the number of vertices in the subtree of the vertex, itself
+   * included, or 0 if it is not in the tree.
+   */
+  public int getSubtreeSize(Object vertex) {
+    int v = id(vertex);
+    return (v >= 0 ? subtreeSize(v) : 0);
+  }
+
+  public boolean isAncestor(int ancestor, int id) {
+    if (!indexed) buildIndex();
+    int entry = entries[ancestor];
+    return entry <= entries[id] && entries[id] < entry + subtreeSizes[ancestor];
+  }
+
+  public int lowestCommonAncestor(int id1, int id2) {
+    if (!indexed) buildIndex();
+    if (id1 == id2) return id1;
+    int from = entries[id1];
+    int to = entries[id2];
+    if (from > to) {
+      int tmp = from;
+      from = to;
+      to = tmp;
+    }
+    //the shallowest vertex after id1 up to id2 in preorder is a child of the lca
+    from++;
+    int k = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+    int u = table[k][from];
+    int w = table[k][to - (1 << k) + 1];
+    return parents[depths[u] <= depths[w] ? u : w];
+  }
+
+  public int depth(int id) {
+    if (!indexed) buildIndex();
+    return depths[id];
+  }
+
+  public int subtreeSize(int id) {
+    if (!indexed) buildIndex();
+    return subtreeSizes[id];
+  }
+
+  private void buildIndex() {
+    int capacity = parents.length;
+    if (entries == null || entries.length < capacity) {
+      entries = new int[capacity];
+      depths = new int[capacity];
+      subtreeSizes = new int[capacity];
+    }
+    int[] preorder = new int[order];
+    if (root != NONE) {
+      int n = 0;
+      int u = root;
+      depths[root] = 0;
+      while (u != NONE) {
+        entries[u] = n;
+        preorder[n++] = u;
+        if (u != root) depths[u] = depths[parents[u]] + 1;
+        if (firstChildren[u] >= 0) {
+          u = firstChildren[u];
+          continue;
+        }
+        while (true) {
+          subtreeSizes[u] = n - entries[u];
+          if (u == root) {
+            u = NONE;
+            break;
+          }
+          if (nextSiblings[u] >= 0) {
+            u = nextSiblings[u];
+            break;
+          }
+          u = parents[u];
+        }
+      }
+    }
+    int levels = 1;
+    while ((1 << levels) <= order) levels++;
+    table = new int[levels][];
+    table[0] = preorder;
+    for (int k = 1; k < levels; k++) {
+      int half = 1 << (k - 1);
+      int[] previous = table[k - 1];
+      int[] level = new int[order - (1 << k) + 1];
+      for (int i = 0; i < level.length; i++) {
+        int u = previous[i];
+        int w = previous[i + half];
+        level[i] = (depths[u] <= depths[w] ? u : w);
+      }
+      table[k] = level;
+    }
+    indexed = true;
+  }
+
+  //renumbers the live vertices densely, keeping their relative order
+  private void compact() {
+    int count = vertexIndex.size();
+    int[] ids = new int[count];
+    VertexIndex index = new VertexIndex(order);
+    for (int v = 0; v < count; v++)
+      ids[v] = (parents[v] != ABSENT ? index.add(vertexIndex.vertexAt(v)) : NONE);
+    int capacity = Math.max(order, 4);
+    int[] newParents = new int[capacity];
+    int[] newFirstChildren = new int[capacity];
+    int[] newLastChildren = new int[capacity];
+    int[] newNextSiblings = new int[capacity];
+    int[] newPreviousSiblings = new int[capacity];
+    int[] newChildCounts = new int[capacity];
+    Object[] newArcs = new Object[capacity];
+    for (int v = 0; v < count; v++) {
+      int n = ids[v];
+      if (n < 0) continue;
+      newParents[n] = remap(ids, parents[v]);
+      newFirstChildren[n] = remap(ids, firstChildren[v]);
+      newLastChildren[n] = remap(ids, lastChildren[v]);
+      newNextSiblings[n] = remap(ids, nextSiblings[v]);
+      newPreviousSiblings[n] = remap(ids, previousSiblings[v]);
+      newChildCounts[n] = childCounts[v];
+      newArcs[n] = arcs[v];
+    }
+    vertexIndex = index;
+    root = remap(ids, root);
+    parents = newParents;
+    firstChildren = newFirstChildren;
+    lastChildren = newLastChildren;
+    nextSiblings = newNextSiblings;
+    previousSiblings = newPreviousSiblings;
+    childCounts = newChildCounts;
+    arcs = newArcs;
+    entries = depths = subtreeSizes = null;
+    table = null;
+  }
+
+  private static int remap(int[] ids, int id) {
+    return (id >= 0 ? ids[id] : id);
+  }
+
+  //marks every vertex of the unlinked subtree absent, walking it in postorder
+  private void clearSubtree(int v) {
+    int u = v;
+    while (true) {
+      while (firstChildren[u] >= 0) u = firstChildren[u];
+      int next = nextSiblings[u];
+      int parent = parents[u];
+      parents[u] = ABSENT;
+      arcs[u] = null;
+      order--;
+      firstChildren[u] = lastChildren[u] = NONE;
+      nextSiblings[u] = previousSiblings[u] = NONE;
+      childCounts[u] = 0;
+      if (u == v) return;
+      if (next >= 0) u = next;
+      else {
+        u = parent;
+        firstChildren[u] = NONE;
+      }
+    }
+  }
+
+  private int add(Object vertex, int parent, Object arc) {
+    int v = vertexIndex.add(vertex);
+    if (v == parents.length) grow();
+    parents[v] = parent;
+    firstChildren[v] = lastChildren[v] = NONE;
+    nextSiblings[v] = NONE;
+    previousSiblings[v] = NONE;
+    childCounts[v] = 0;
+    arcs[v] = arc;
+    if (parent >= 0) {
+      int last = lastChildren[parent];
+      if (last >= 0) {
+        nextSiblings[last] = v;
+        previousSiblings[v] = last;
+      } else firstChildren[parent] = v;
+      lastChildren[parent] = v;
+      childCounts[parent]++;
+    }
+    order++;
+    indexed = false;
+    return v;
+  }
+
+  private void grow() {
+    int capacity = parents.length * 2;
+    parents = grow(parents, capacity);
+    firstChildren = grow(firstChildren, capacity);
+    lastChildren = grow(lastChildren, capacity);
+    nextSiblings = grow(nextSiblings, capacity);
+    previousSiblings = grow(previousSiblings, capacity);
+    childCounts = grow(childCounts, capacity);
+    Object[] tmp = new Object[capacity];
+    System.arraycopy(arcs, 0, tmp, 0, arcs.length);
+    arcs = tmp;
+  }
+
+  private static int[] grow(int[] array, int capacity) {
+    int[] tmp = new int[capacity];
+    System.arraycopy(array, 0, tmp, 0, array.length);
+    return tmp;
+  }
+
+  private class ChildIterator implements ArcIterator {
+    private int parent;
+    private int child = NONE;
+    private int next;
+
+    private ChildIterator(int parent) {
+      this.parent = parent;
+      next = firstChildren[parent];
+    }
+    public Object getOrigin() {
+      return vertexIndex.vertexAt(parent);
+    }
+    public Object getDestination() {
+      return (child >= 0 ? vertexIndex.vertexAt(child) : null);
+    }
+    public boolean hasNext() {
+      return next >= 0;
+    }
+    public Object next() {
+      if (next < 0) throw new NoSuchElementException();
+      child = next;
+      next = nextSiblings[child];
+      return arcs[child];
+    }
+    public void remove() {
+      throw new UnsupportedOperationException("Use removeSubtree().");
+    }
+  }
+}
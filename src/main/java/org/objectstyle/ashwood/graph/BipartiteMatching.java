@@ -0,0 +1,237 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+
+/**
+ * Maximum cardinality matching of a bipartite digraph by Hopcroft-Karp.
+ * Arcs lead from left vertices to right vertices, so every vertex must
+ * have only outgoing or only incoming arcs. Each phase layers the left
+ * vertices by a breadth first search from the free ones and then augments
+ * along vertex-disjoint shortest paths with an iterative depth first
+ * search that never retries an arc within the phase, giving
+ * O(E sqrt(V)) time over int arrays.
+ * <p>
+ * The search can be warm started from a previous matching, e.g. one
+ * computed before a few arcs changed: its pairs that are still arcs of the
+ * digraph are kept and only the remaining augmenting paths are searched.
+ */
+public class BipartiteMatching {
+  private static final int INFINITY = Integer.MAX_VALUE;
+
+  private CsrDigraph digraph;
+  private Map initialMatching;
+  private int[] lefts;
+  private int[] mates;
+  private int cardinality = -1;
+
+  public BipartiteMatching(DigraphIteration digraph) {
+    this(digraph, null);
+  }
+
+  /**
+   * @param initialMatching pairs (left vertex, right vertex) to start
+   * from, e.g. the result of getMatching() on an earlier version of the
+   * digraph; pairs that are not arcs or that conflict are skipped
+   * @throws IllegalArgumentException if a vertex has both incoming and
+   * outgoing arcs
+   */
+  public BipartiteMatching(DigraphIteration digraph, Map initialMatching) {
+    this.digraph = CsrDigraph.copyOf(digraph);
+    this.initialMatching = initialMatching;
+    int order = this.digraph.order();
+    int leftCount = 0;
+    for (int v = 0; v < order; v++) {
+      if (this.digraph.outDegree(v) == 0) continue;
+      if (this.digraph.inDegree(v) > 0)
+        throw new IllegalArgumentException("Vertex " + this.digraph.vertexAt(v) + " has both incoming and outgoing arcs.");
+      leftCount++;
+    }
+    lefts = new int[leftCount];
+    leftCount = 0;
+    for (int v = 0; v < order; v++)
+      if (this.digraph.outDegree(v) > 0) lefts[leftCount++] = v;
+  }
+
+  /**
+   * Returns the number of matched pairs.
+   */
+  public int getCardinality() {
+    run();
+    return cardinality;
+  }
+
+  /**
+   * Returns the vertex matched with the given one, on either side, or null
+   * if it is free.
+   */
+  public Object getMate(Object vertex) {
+    run();
+    int v = digraph.indexOf(vertex);
+    return (v >= 0 && mates[v] >= 0 ? digraph.vertexAt(mates[v]) : null);
+  }
+
+  /**
+   * Returns the matching as a map from left vertices to right vertices.
+   */
+  public Map getMatching() {
+    run();
+    Map matching = new HashMap(cardinality * 2);
+    for (int i = 0; i < lefts.length; i++) {
+      int u = lefts[i];
+      if (mates[u] >= 0) matching.put(digraph.vertexAt(u), digraph.vertexAt(mates[u]));
+    }
+    return matching;
+  }
+
+  private synchronized void run() {
+    if (cardinality >= 0) return;
+    int order = digraph.order();
+    mates = new int[order];
+    Arrays.fill(mates, -1);
+    cardinality = 0;
+    if (initialMatching != null) {
+      for (Iterator i = initialMatching.entrySet().iterator(); i.hasNext();) {
+        Map.Entry entry = (Map.Entry)i.next();
+        int u = digraph.indexOf(entry.getKey());
+        int v = digraph.indexOf(entry.getValue());
+        if (u < 0 || v < 0 || mates[u] >= 0 || mates[v] >= 0 || digraph.arcPosition(u, v) < 0) continue;
+        match(u, v);
+      }
+      initialMatching = null;
+    }
+    //greedy pass: most pairs are found without layering
+    for (int i = 0; i < lefts.length; i++) {
+      int u = lefts[i];
+      if (mates[u] >= 0) continue;
+      for (int p = digraph.outStart(u), end = digraph.outEnd(u); p < end; p++) {
+        int v = digraph.arcTarget(p);
+        if (mates[v] < 0) {
+          match(u, v);
+          break;
+        }
+      }
+    }
+    int[] distances = new int[order];
+    int[] positions = new int[order];
+    int[] queue = new int[lefts.length];
+    int[] stack = new int[lefts.length + 1];
+    int limit;
+    while ((limit = layer(distances, queue)) != INFINITY) {
+      for (int i = 0; i < lefts.length; i++) {
+        int u = lefts[i];
+        positions[u] = digraph.outStart(u);
+      }
+      for (int i = 0; i < lefts.length; i++) {
+        int u = lefts[i];
+        if (mates[u] < 0) augment(u, limit, distances, positions, stack);
+      }
+    }
+  }
+
+  //breadth first layering from the free left vertices; returns the length
+  //of the shortest augmenting path or INFINITY if there is none
+  private int layer(int[] distances, int[] queue) {
+    int head = 0, tail = 0;
+    for (int i = 0; i < lefts.length; i++) {
+      int u = lefts[i];
+      if (mates[u] < 0) {
+        distances[u] = 0;
+        queue[tail++] = u;
+      } else distances[u] = INFINITY;
+    }
+    int limit = INFINITY;
+    while (head < tail) {
+      int u = queue[head++];
+      if (distances[u] + 1 >= limit) continue;
+      for (int p = digraph.outStart(u), end = digraph.outEnd(u); p < end; p++) {
+        int w = mates[digraph.arcTarget(p)];
+        if (w < 0) {
+          if (limit == INFINITY) limit = distances[u] + 1;
+        } else if (distances[w] == INFINITY) {
+          distances[w] = distances[u] + 1;
+          queue[tail++] = w;
+        }
+      }
+    }
+    return limit;
+  }
+
+  private boolean augment(int root, int limit, int[] distances, int[] positions, int[] stack) {
+    int top = 0;
+    stack[0] = root;
+    while (top >= 0) {
+      int u = stack[top];
+      if (positions[u] == digraph.outEnd(u)) {
+        //dead end for the rest of the phase
+        distances[u] = INFINITY;
+        if (--top >= 0) positions[stack[top]]++;
+        continue;
+      }
+      int v = digraph.arcTarget(positions[u]);
+      int w = mates[v];
+      if (w < 0) {
+        if (distances[u] + 1 == limit) {
+          for (int i = top; i >= 0; i--) {
+            int x = stack[i];
+            int y = digraph.arcTarget(positions[x]);
+            mates[x] = y;
+            mates[y] = x;
+          }
+          cardinality++;
+          return true;
+        }
+        positions[u]++;
+      } else if (distances[w] == distances[u] + 1) stack[++top] = w;
+      else positions[u]++;
+    }
+    return false;
+  }
+
+  private void match(int u, int v) {
+    mates[u] = v;
+    mates[v] = u;
+    cardinality++;
+  }
+}
@@ -0,0 +1,339 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+/**
+ * Thread-safe digraph for concurrent ingestion. Adjacency is kept in
+ * ConcurrentHashMaps in both directions, so reads never block and all
+ * iterators are weakly consistent: they never throw
+ * ConcurrentModificationException and may or may not reflect changes made
+ * after their creation. Writers touching the same origin vertex are
+ * serialized by one of a fixed set of lock stripes, which keeps the
+ * forward and reverse maps in agreement; writers on different stripes run
+ * in parallel. The arc count is a LongAdder.
+ * <p>
+ * Single arc operations are atomic. removeVertex() holds every stripe
+ * while it unlinks the vertex, so it is atomic too, at the price of
+ * pausing all arc writers; putArc() retries if the vertex maps it looked up
+ * were dropped before it got its stripe. The bulk removal methods are not
+ * atomic with respect to writers adding arcs to the same vertex at the
+ * same time, but every arc they remove goes in both directions at once.
+ */
+public class ConcurrentDigraph implements Digraph, Serializable {
+  private ConcurrentMap graph;
+  private ConcurrentMap reverseGraph;
+  private int stripeCount;
+  private transient Object[] locks;
+  private LongAdder size = new LongAdder();
+
+  public ConcurrentDigraph() {
+    this(64);
+  }
+
+  public ConcurrentDigraph(int stripeCount) {
+    int stripes = 1;
+    while (stripes < stripeCount) stripes <<= 1;
+    this.stripeCount = stripes;
+    createLocks();
+    graph = new ConcurrentHashMap();
+    reverseGraph = new ConcurrentHashMap();
+  }
+
+  private void createLocks() {
+    locks = new Object[stripeCount];
+    for (int i = 0; i < stripeCount; i++) locks[i] = new Object();
+  }
+
+  //lock stripes are plain monitors and are not serialized
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    createLocks();
+  }
+
+  private Object lockFor(Object vertex) {
+    int h = vertex.hashCode();
+    h ^= (h >>> 16);
+    return locks[h & (locks.length - 1)];
+  }
+
+  private Map outgoing(Object vertex) {
+    Map destinations = (Map)graph.get(vertex);
+    if (destinations == null) {
+      Map created = new ConcurrentHashMap();
+      destinations = (Map)graph.putIfAbsent(vertex, created);
+      if (destinations == null) destinations = created;
+    }
+    return destinations;
+  }
+
+  private Map incoming(Object vertex) {
+    Map origins = (Map)reverseGraph.get(vertex);
+    if (origins == null) {
+      Map created = new ConcurrentHashMap();
+      origins = (Map)reverseGraph.putIfAbsent(vertex, created);
+      if (origins == null) origins = created;
+    }
+    return origins;
+  }
+
+  public boolean addVertex(Object vertex) {
+    incoming(vertex);
+    if (graph.containsKey(vertex)) return false;
+    return graph.putIfAbsent(vertex, new ConcurrentHashMap()) == null;
+  }
+  public boolean addAllVertices(Collection vertices) {
+    boolean modified = false;
+    for (Iterator i = vertices.iterator(); i.hasNext();)
+      modified |= addVertex(i.next());
+    return modified;
+  }
+  public Object putArc(Object origin, Object destination, Object arc) {
+    if (arc == null) throw new NullPointerException("null arc");
+    while (true) {
+      Map origins = incoming(destination);
+      outgoing(destination);
+      incoming(origin);
+      Map destinations = outgoing(origin);
+      synchronized (lockFor(origin)) {
+        //a removeVertex() may have dropped the maps captured above
+        if (graph.get(origin) != destinations || reverseGraph.get(destination) != origins ||
+            !graph.containsKey(destination)) continue;
+        Object oldArc = destinations.put(destination, arc);
+        origins.put(origin, arc);
+        if (oldArc == null) size.increment();
+        return oldArc;
+      }
+    }
+  }
+  public Object getArc(Object origin, Object destination) {
+    Map destinations = (Map)graph.get(origin);
+    if (destinations == null) return null;
+    return destinations.get(destination);
+  }
+  public boolean removeVertex(Object vertex) {
+    if (!graph.containsKey(vertex)) return false;
+    return removeVertex(vertex, 0);
+  }
+
+  //takes every stripe in order, so no arc writer runs while the vertex is
+  //unlinked and its maps are dropped
+  private boolean removeVertex(Object vertex, int stripe) {
+    if (stripe < locks.length) {
+      synchronized (locks[stripe]) {
+        return removeVertex(vertex, stripe + 1);
+      }
+    }
+    if (!graph.containsKey(vertex)) return false;
+    removeOutgoing(vertex);
+    removeIncoming(vertex);
+    graph.remove(vertex);
+    reverseGraph.remove(vertex);
+    return true;
+  }
+  public boolean removeAllVertices(Collection vertices) {
+    boolean modified = false;
+    for (Iterator i = vertices.iterator(); i.hasNext();)
+      modified |= removeVertex(i.next());
+    return modified;
+  }
+  public Object removeArc(Object origin, Object destination) {
+    Map destinations = (Map)graph.get(origin);
+    if (destinations == null) return null;
+    synchronized (lockFor(origin)) {
+      Object arc = destinations.remove(destination);
+      if (arc == null) return null;
+      Map origins = (Map)reverseGraph.get(destination);
+      if (origins != null) origins.remove(origin);
+      size.decrement();
+      return arc;
+    }
+  }
+  public boolean removeIncoming(Object vertex) {
+    Map origins = (Map)reverseGraph.get(vertex);
+    if (origins == null) return false;
+    boolean modified = false;
+    for (Iterator i = origins.keySet().iterator(); i.hasNext();)
+      modified |= (removeArc(i.next(), vertex) != null);
+    return modified;
+  }
+  public boolean removeOutgoing(Object vertex) {
+    Map destinations = (Map)graph.get(vertex);
+    if (destinations == null) return false;
+    boolean modified = false;
+    for (Iterator i = destinations.keySet().iterator(); i.hasNext();)
+      modified |= (removeArc(vertex, i.next()) != null);
+    return modified;
+  }
+
+  public Iterator vertexIterator() {
+    return Collections.unmodifiableSet(graph.keySet()).iterator();
+  }
+  public ArcIterator arcIterator() {
+    return new AllArcIterator();
+  }
+  public ArcIterator outgoingIterator(Object vertex) {
+    Map destinations = (Map)graph.get(vertex);
+    if (destinations == null) return ArcIterator.EMPTY_ITERATOR;
+    return new AdjacentArcIterator(vertex, destinations, true);
+  }
+  public ArcIterator incomingIterator(Object vertex) {
+    Map origins = (Map)reverseGraph.get(vertex);
+    if (origins == null || !graph.containsKey(vertex)) return ArcIterator.EMPTY_ITERATOR;
+    return new AdjacentArcIterator(vertex, origins, false);
+  }
+
+  public int order() {
+    return graph.size();
+  }
+  public int size() {
+    return size.intValue();
+  }
+  public int outgoingSize(Object vertex) {
+    Map destinations = (Map)graph.get(vertex);
+    return (destinations == null ? 0 : destinations.size());
+  }
+  public int incomingSize(Object vertex) {
+    Map origins = (Map)reverseGraph.get(vertex);
+    return (origins == null ? 0 : origins.size());
+  }
+  public boolean containsVertex(Object vertex) {
+    return graph.containsKey(vertex);
+  }
+  public boolean containsAllVertices(Collection vertices) {
+    for (Iterator i = vertices.iterator(); i.hasNext();)
+      if (!graph.containsKey(i.next())) return false;
+    return true;
+  }
+  public boolean hasArc(Object origin, Object destination) {
+    Map destinations = (Map)graph.get(origin);
+    return (destinations != null && destinations.containsKey(destination));
+  }
+  public boolean isEmpty() {
+    return graph.isEmpty();
+  }
+  public boolean isOutgoingEmpty(Object vertex) {
+    return outgoingSize(vertex) == 0;
+  }
+  public boolean isIncomingEmpty(Object vertex) {
+    return incomingSize(vertex) == 0;
+  }
+
+  private static class AdjacentArcIterator implements ArcIterator {
+    private Object vertex;
+    private boolean outgoing;
+    private Iterator entryIt;
+    private Map.Entry entry;
+
+    private AdjacentArcIterator(Object vertex, Map adjacency, boolean outgoing) {
+      this.vertex = vertex;
+      this.outgoing = outgoing;
+      entryIt = adjacency.entrySet().iterator();
+    }
+    public Object getOrigin() {
+      if (outgoing) return vertex;
+      return (entry != null ? entry.getKey() : null);
+    }
+    public Object getDestination() {
+      if (!outgoing) return vertex;
+      return (entry != null ? entry.getKey() : null);
+    }
+    public boolean hasNext() {
+      return entryIt.hasNext();
+    }
+    public Object next() {
+      entry = (Map.Entry)entryIt.next();
+      return entry.getValue();
+    }
+    public void remove() {
+      throw new UnsupportedOperationException("Method remove() not supported.");
+    }
+  }
+
+  private class AllArcIterator implements ArcIterator {
+    private Iterator orgIterator = graph.entrySet().iterator();
+    private Iterator dstIterator;
+    private Object origin, nextOrigin;
+    private Map.Entry entry, nextEntry;
+
+    private AllArcIterator() {
+      advance();
+    }
+    public Object getOrigin() {
+      return origin;
+    }
+    public Object getDestination() {
+      return (entry != null ? entry.getKey() : null);
+    }
+    public boolean hasNext() {
+      return nextEntry != null;
+    }
+    public Object next() {
+      if (nextEntry == null) throw new NoSuchElementException();
+      origin = nextOrigin;
+      entry = nextEntry;
+      advance();
+      return entry.getValue();
+    }
+    private void advance() {
+      nextEntry = null;
+      while (dstIterator == null || !dstIterator.hasNext()) {
+        if (!orgIterator.hasNext()) return;
+        Map.Entry orgEntry = (Map.Entry)orgIterator.next();
+        nextOrigin = orgEntry.getKey();
+        dstIterator = ((Map)orgEntry.getValue()).entrySet().iterator();
+      }
+      nextEntry = (Map.Entry)dstIterator.next();
+    }
+    public void remove() {
+      throw new UnsupportedOperationException("Method remove() not supported.");
+    }
+  }
+}
@@ -0,0 +1,382 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+import java.io.Serializable;
+import org.apache.commons.collections.*;
+
+/**
+ * Read-only digraph snapshot in compressed sparse row form. Vertices are
+ * numbered 0..order()-1 in the order the source iteration reported them;
+ * outgoing arcs of vertex <code>v</code> occupy positions
+ * <code>outStart(v)</code> to <code>outEnd(v)-1</code> of the arc arrays,
+ * sorted by destination index, and the transposed rows reference the same
+ * arc positions. All mutators throw UnsupportedOperationException.
+ */
+public class CsrDigraph implements Digraph, IntDigraph, Serializable {
+  private Object[] vertices;
+  private VertexIndex vertexIndex;
+  private int[] outOffsets;
+  private int[] outTargets;
+  private Object[] arcs;
+  private int[] inOffsets;
+  private int[] inSources;
+  private int[] inArcPositions;
+
+  private CsrDigraph() {
+  }
+
+  public static CsrDigraph copyOf(DigraphIteration digraph) {
+    CsrDigraph csr = new CsrDigraph();
+    csr.build(digraph);
+    return csr;
+  }
+
+  /**
+   * Wraps ready-made forward rows: the outgoing arcs of vertex
+   * <code>v</code> go to <code>outTargets[outOffsets[v]..outOffsets[v+1]-1]</code>
+   * and carry the values at the same positions of <code>arcs</code>. Every
+   * row must be sorted by target index. The arrays are used as is, not
+   * copied.
+   */
+  public static CsrDigraph fromRows(Object[] vertices, int[] outOffsets, int[] outTargets, Object[] arcs) {
+    CsrDigraph csr = new CsrDigraph();
+    csr.vertices = vertices;
+    csr.vertexIndex = new VertexIndex(vertices.length);
+    for (int v = 0; v < vertices.length; v++) {
+      if (csr.vertexIndex.add(vertices[v]) != v)
+        throw new IllegalArgumentException("Duplicate vertex: " + vertices[v]);
+    }
+    csr.outOffsets = outOffsets;
+    csr.outTargets = outTargets;
+    csr.arcs = arcs;
+    csr.buildTransposed();
+    return csr;
+  }
+
+  private void build(DigraphIteration digraph) {
+    vertexIndex = new VertexIndex();
+    vertexIndex.addAll(digraph.vertexIterator());
+    int[] origins = new int[16];
+    int[] destinations = new int[16];
+    Object[] arcValues = new Object[16];
+    int size = 0;
+    for (ArcIterator i = digraph.arcIterator(); i.hasNext();) {
+      Object arc = i.next();
+      if (size == origins.length) {
+        origins = grow(origins);
+        destinations = grow(destinations);
+        Object[] tmp = new Object[arcValues.length * 2];
+        System.arraycopy(arcValues, 0, tmp, 0, size);
+        arcValues = tmp;
+      }
+      origins[size] = vertexIndex.add(i.getOrigin());
+      destinations[size] = vertexIndex.add(i.getDestination());
+      arcValues[size] = arc;
+      size++;
+    }
+    int order = vertexIndex.size();
+    vertices = vertexIndex.toArray();
+
+    //bucket arcs by destination first, so that distributing them by origin
+    //leaves every outgoing row sorted by destination index
+    int[] byDestination = new int[size];
+    int[] cursor = new int[order + 1];
+    for (int k = 0; k < size; k++) cursor[destinations[k] + 1]++;
+    for (int v = 0; v < order; v++) cursor[v + 1] += cursor[v];
+    for (int k = 0; k < size; k++) byDestination[cursor[destinations[k]]++] = k;
+
+    outOffsets = new int[order + 1];
+    for (int k = 0; k < size; k++) outOffsets[origins[k] + 1]++;
+    for (int v = 0; v < order; v++) outOffsets[v + 1] += outOffsets[v];
+    outTargets = new int[size];
+    arcs = new Object[size];
+    System.arraycopy(outOffsets, 0, cursor, 0, order + 1);
+    for (int j = 0; j < size; j++) {
+      int k = byDestination[j];
+      int position = cursor[origins[k]]++;
+      outTargets[position] = destinations[k];
+      arcs[position] = arcValues[k];
+    }
+    buildTransposed();
+  }
+
+  //transpose, rows come out sorted by origin index
+  private void buildTransposed() {
+    int order = vertices.length;
+    int size = outOffsets[order];
+    int[] cursor = new int[order + 1];
+    inOffsets = new int[order + 1];
+    for (int p = 0; p < size; p++) inOffsets[outTargets[p] + 1]++;
+    for (int v = 0; v < order; v++) inOffsets[v + 1] += inOffsets[v];
+    inSources = new int[size];
+    inArcPositions = new int[size];
+    System.arraycopy(inOffsets, 0, cursor, 0, order + 1);
+    for (int v = 0; v < order; v++) {
+      for (int p = outOffsets[v]; p < outOffsets[v + 1]; p++) {
+        int position = cursor[outTargets[p]]++;
+        inSources[position] = v;
+        inArcPositions[position] = p;
+      }
+    }
+  }
+
+  private static int[] grow(int[] array) {
+    int[] tmp = new int[array.length * 2];
+    System.arraycopy(array, 0, tmp, 0, array.length);
+    return tmp;
+  }
+
+  public VertexIndex getVertexIndex() {
+    return vertexIndex;
+  }
+  public int indexOf(Object vertex) {
+    return vertexIndex.indexOf(vertex);
+  }
+  public Object vertexAt(int index) {
+    return vertices[index];
+  }
+  public int outDegree(int vertex) {
+    return outOffsets[vertex + 1] - outOffsets[vertex];
+  }
+  public int inDegree(int vertex) {
+    return inOffsets[vertex + 1] - inOffsets[vertex];
+  }
+  public int target(int vertex, int i) {
+    return outTargets[outOffsets[vertex] + i];
+  }
+  public int source(int vertex, int i) {
+    return inSources[inOffsets[vertex] + i];
+  }
+  public Object arc(int vertex, int i) {
+    return arcs[outOffsets[vertex] + i];
+  }
+  public Object incomingArc(int vertex, int i) {
+    return arcs[inArcPositions[inOffsets[vertex] + i]];
+  }
+  public int outStart(int vertex) {
+    return outOffsets[vertex];
+  }
+  public int outEnd(int vertex) {
+    return outOffsets[vertex + 1];
+  }
+  public int arcTarget(int position) {
+    return outTargets[position];
+  }
+  public Object arcAt(int position) {
+    return arcs[position];
+  }
+  public int arcPosition(int origin, int destination) {
+    int position = Arrays.binarySearch(outTargets, outOffsets[origin], outOffsets[origin + 1], destination);
+    return (position >= 0 ? position : -1);
+  }
+
+  public boolean addVertex(Object vertex) {
+    throw new UnsupportedOperationException("CsrDigraph is read-only.");
+  }
+  public boolean addAllVertices(Collection vertices) {
+    throw new UnsupportedOperationException("CsrDigraph is read-only.");
+  }
+  public Object putArc(Object origin, Object destination, Object arc) {
+    throw new UnsupportedOperationException("CsrDigraph is read-only.");
+  }
+  public boolean removeVertex(Object vertex) {
+    throw new UnsupportedOperationException("CsrDigraph is read-only.");
+  }
+  public boolean removeAllVertices(Collection vertices) {
+    throw new UnsupportedOperationException("CsrDigraph is read-only.");
+  }
+  public Object removeArc(Object origin, Object destination) {
+    throw new UnsupportedOperationException("CsrDigraph is read-only.");
+  }
+  public boolean removeIncoming(Object vertex) {
+    throw new UnsupportedOperationException("CsrDigraph is read-only.");
+  }
+  public boolean removeOutgoing(Object vertex) {
+    throw new UnsupportedOperationException("CsrDigraph is read-only.");
+  }
+
+  public Object getArc(Object origin, Object destination) {
+    int org = indexOf(origin);
+    int dst = indexOf(destination);
+    if (org < 0 || dst < 0) return null;
+    int position = arcPosition(org, dst);
+    return (position >= 0 ? arcs[position] : null);
+  }
+  public int order() {
+    return vertices.length;
+  }
+  public int size() {
+    return outOffsets[vertices.length];
+  }
+  public int outgoingSize(Object vertex) {
+    int index = indexOf(vertex);
+    return (index >= 0 ? outDegree(index) : 0);
+  }
+  public int incomingSize(Object vertex) {
+    int index = indexOf(vertex);
+    return (index >= 0 ? inDegree(index) : 0);
+  }
+  public boolean containsVertex(Object vertex) {
+    return vertexIndex.contains(vertex);
+  }
+  public boolean containsAllVertices(Collection vertices) {
+    for (Iterator i = vertices.iterator(); i.hasNext();)
+      if (!vertexIndex.contains(i.next())) return false;
+    return true;
+  }
+  public boolean hasArc(Object origin, Object destination) {
+    int org = indexOf(origin);
+    int dst = indexOf(destination);
+    return (org >= 0 && dst >= 0 && arcPosition(org, dst) >= 0);
+  }
+  public boolean isEmpty() {
+    return vertices.length == 0;
+  }
+  public boolean isOutgoingEmpty(Object vertex) {
+    return outgoingSize(vertex) == 0;
+  }
+  public boolean isIncomingEmpty(Object vertex) {
+    return incomingSize(vertex) == 0;
+  }
+
+  public Iterator vertexIterator() {
+    return IteratorUtils.arrayIterator(vertices);
+  }
+  public ArcIterator arcIterator() {
+    return new AllArcIterator();
+  }
+  public ArcIterator outgoingIterator(Object vertex) {
+    int index = indexOf(vertex);
+    if (index < 0) return ArcIterator.EMPTY_ITERATOR;
+    return new OutgoingArcIterator(index);
+  }
+  public ArcIterator incomingIterator(Object vertex) {
+    int index = indexOf(vertex);
+    if (index < 0) return ArcIterator.EMPTY_ITERATOR;
+    return new IncomingArcIterator(index);
+  }
+
+  private class AllArcIterator implements ArcIterator {
+    private int origin = -1;
+    private int position = -1;
+
+    public Object getOrigin() {
+      return (origin >= 0 ? vertices[origin] : null);
+    }
+    public Object getDestination() {
+      return (position >= 0 ? vertices[outTargets[position]] : null);
+    }
+    public boolean hasNext() {
+      return position + 1 < outOffsets[vertices.length];
+    }
+    public Object next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      position++;
+      while (outOffsets[origin + 1] <= position) origin++;
+      return arcs[position];
+    }
+    public void remove() {
+      throw new UnsupportedOperationException("CsrDigraph is read-only.");
+    }
+  }
+
+  private class OutgoingArcIterator implements ArcIterator {
+    private int origin;
+    private int position;
+    private int end;
+
+    private OutgoingArcIterator(int origin) {
+      this.origin = origin;
+      position = outOffsets[origin] - 1;
+      end = outOffsets[origin + 1];
+    }
+    public Object getOrigin() {
+      return vertices[origin];
+    }
+    public Object getDestination() {
+      if (position < outOffsets[origin]) return null;
+      return vertices[outTargets[position]];
+    }
+    public boolean hasNext() {
+      return position + 1 < end;
+    }
+    public Object next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      return arcs[++position];
+    }
+    public void remove() {
+      throw new UnsupportedOperationException("CsrDigraph is read-only.");
+    }
+  }
+
+  private class IncomingArcIterator implements ArcIterator {
+    private int destination;
+    private int position;
+    private int end;
+
+    private IncomingArcIterator(int destination) {
+      this.destination = destination;
+      position = inOffsets[destination] - 1;
+      end = inOffsets[destination + 1];
+    }
+    public Object getOrigin() {
+      if (position < inOffsets[destination]) return null;
+      return vertices[inSources[position]];
+    }
+    public Object getDestination() {
+      return vertices[destination];
+    }
+    public boolean hasNext() {
+      return position + 1 < end;
+    }
+    public Object next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      return arcs[inArcPositions[++position]];
+    }
+    public void remove() {
+      throw new UnsupportedOperationException("CsrDigraph is read-only.");
+    }
+  }
+}
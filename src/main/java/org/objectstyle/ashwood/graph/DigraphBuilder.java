@@ -0,0 +1,231 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+import org.apache.commons.collections.*;
+
+/**
+ * Collects arcs in flat primitive arrays and publishes them as a MapDigraph
+ * or a CsrDigraph in one step. Arcs are grouped by origin with a linear
+ * counting sort, so every adjacency map is created once at its exact final
+ * size instead of being rehashed as it grows. If the same origin and
+ * destination are added more than once, the last arc wins, as with putArc().
+ * A null arc is stored as <code>Boolean.TRUE</code>, the value the library
+ * uses for arcs that carry nothing, since the iterators of MapDigraph end
+ * at a null arc. The builder keeps its contents after publishing and may
+ * be reused.
+ */
+public class DigraphBuilder {
+  private VertexIndex vertexIndex;
+  private int[] origins;
+  private int[] destinations;
+  private Object[] arcs;
+  private int size;
+
+  public DigraphBuilder() {
+    this(16, 16);
+  }
+
+  /**
+   * Creates a builder sized for the expected number of vertices and arcs.
+   */
+  public DigraphBuilder(int expectedOrder, int expectedSize) {
+    vertexIndex = new VertexIndex(expectedOrder);
+    expectedSize = Math.max(expectedSize, 16);
+    origins = new int[expectedSize];
+    destinations = new int[expectedSize];
+    arcs = new Object[expectedSize];
+  }
+
+  /**
+   * Makes room for <code>additionalSize</code> more arcs, e.g. before a batch.
+   */
+  public void ensureCapacity(int additionalSize) {
+    int required = size + additionalSize;
+    if (required <= origins.length) return;
+    int capacity = Math.max(required, origins.length * 2);
+    int[] tmp = new int[capacity];
+    System.arraycopy(origins, 0, tmp, 0, size);
+    origins = tmp;
+    tmp = new int[capacity];
+    System.arraycopy(destinations, 0, tmp, 0, size);
+    destinations = tmp;
+    Object[] tmpArcs = new Object[capacity];
+    System.arraycopy(arcs, 0, tmpArcs, 0, size);
+    arcs = tmpArcs;
+  }
+
+  public void addVertex(Object vertex) {
+    vertexIndex.add(vertex);
+  }
+
+  public void addAllVertices(Collection vertices) {
+    vertexIndex.addAll(vertices.iterator());
+  }
+
+  public void addArc(Object origin, Object destination, Object arc) {
+    if (size == origins.length) ensureCapacity(1);
+    origins[size] = vertexIndex.add(origin);
+    destinations[size] = vertexIndex.add(destination);
+    arcs[size++] = (arc != null ? arc : Boolean.TRUE);
+  }
+
+  /**
+   * Adds <code>length</code> arcs starting at <code>offset</code> of the
+   * parallel arrays. <code>arcValues</code> may be null for arcs without
+   * values, which are then stored as <code>Boolean.TRUE</code>.
+   */
+  public void addArcs(Object[] arcOrigins, Object[] arcDestinations, Object[] arcValues,
+                      int offset, int length) {
+    ensureCapacity(length);
+    for (int i = offset; i < offset + length; i++) {
+      origins[size] = vertexIndex.add(arcOrigins[i]);
+      destinations[size] = vertexIndex.add(arcDestinations[i]);
+      Object arc = (arcValues != null ? arcValues[i] : null);
+      arcs[size++] = (arc != null ? arc : Boolean.TRUE);
+    }
+  }
+
+  public void addArcs(DigraphIteration digraph) {
+    vertexIndex.addAll(digraph.vertexIterator());
+    for (ArcIterator i = digraph.arcIterator(); i.hasNext();) {
+      Object arc = i.next();
+      addArc(i.getOrigin(), i.getDestination(), arc);
+    }
+  }
+
+  public int order() {
+    return vertexIndex.size();
+  }
+
+  /**
+   * Returns the number of arcs added so far, duplicates included.
+   */
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    vertexIndex = new VertexIndex();
+    Arrays.fill(arcs, 0, size, null);
+    size = 0;
+  }
+
+  public CsrDigraph toCsrDigraph() {
+    Rows rows = group();
+    return CsrDigraph.fromRows(vertexIndex.toArray(), rows.offsets, rows.targets, rows.arcs);
+  }
+
+  public MapDigraph toMapDigraph() {
+    return toMapDigraph(null, false);
+  }
+
+  public MapDigraph toMapDigraph(Factory mapFactory, boolean bidirectional) {
+    Rows rows = group();
+    MapDigraph digraph = new MapDigraph(mapFactory, bidirectional);
+    digraph.load(vertexIndex.toArray(), rows.offsets, rows.targets, rows.arcs);
+    return digraph;
+  }
+
+  //two stable counting sorts, by destination and then by origin, leave every
+  //row sorted by target with duplicates adjacent in insertion order
+  private Rows group() {
+    int order = vertexIndex.size();
+    int[] byDestination = new int[size];
+    int[] cursor = new int[order + 1];
+    for (int k = 0; k < size; k++) cursor[destinations[k] + 1]++;
+    for (int v = 0; v < order; v++) cursor[v + 1] += cursor[v];
+    for (int k = 0; k < size; k++) byDestination[cursor[destinations[k]]++] = k;
+
+    int[] offsets = new int[order + 1];
+    for (int k = 0; k < size; k++) offsets[origins[k] + 1]++;
+    for (int v = 0; v < order; v++) offsets[v + 1] += offsets[v];
+    System.arraycopy(offsets, 0, cursor, 0, order + 1);
+    int[] sorted = new int[size];
+    for (int j = 0; j < size; j++) {
+      int k = byDestination[j];
+      sorted[cursor[origins[k]]++] = k;
+    }
+    byDestination = null;
+
+    int[] targets = new int[size];
+    Object[] values = new Object[size];
+    int position = 0;
+    for (int v = 0; v < order; v++) {
+      int start = position;
+      for (int j = offsets[v]; j < offsets[v + 1]; j++) {
+        int k = sorted[j];
+        if (position > start && targets[position - 1] == destinations[k])
+          values[position - 1] = arcs[k];
+        else {
+          targets[position] = destinations[k];
+          values[position++] = arcs[k];
+        }
+      }
+      offsets[v] = start;
+    }
+    offsets[order] = position;
+    if (position < size) {
+      int[] tmp = new int[position];
+      System.arraycopy(targets, 0, tmp, 0, position);
+      targets = tmp;
+      Object[] tmpValues = new Object[position];
+      System.arraycopy(values, 0, tmpValues, 0, position);
+      values = tmpValues;
+    }
+    return new Rows(offsets, targets, values);
+  }
+
+  private static class Rows {
+    int[] offsets;
+    int[] targets;
+    Object[] arcs;
+
+    Rows(int[] offsets, int[] targets, Object[] arcs) {
+      this.offsets = offsets;
+      this.targets = targets;
+      this.arcs = arcs;
+    }
+  }
+}
@@ -0,0 +1,305 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.apache.commons.collections.Transformer;
+
+/**
+ * Runs a task for every vertex of a DAG on an ExecutorService, starting each
+ * task as soon as the tasks of all its predecessors have finished. At most
+ * <code>maxConcurrency</code> tasks are handed to the executor at a time;
+ * among the ready vertices the one heading the longest remaining path, by
+ * the cost function, goes first, so the critical path is never starved.
+ * <p>
+ * The first task to throw stops the execution: no further tasks are
+ * started, the running ones are allowed to finish, and get() throws an
+ * ExecutionException carrying the failure. Cancelling the returned Future
+ * also stops dispatching and optionally interrupts the running tasks.
+ * An executor running tasks in the calling thread is supported as well; the
+ * whole DAG is then processed inside submit().
+ */
+public class DigraphExecutor {
+  private ExecutorService executor;
+  private int maxConcurrency;
+  private Transformer costFunction;
+
+  public DigraphExecutor(ExecutorService executor) {
+    this(executor, Runtime.getRuntime().availableProcessors());
+  }
+
+  public DigraphExecutor(ExecutorService executor, int maxConcurrency) {
+    if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency=" + maxConcurrency);
+    this.executor = executor;
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  /**
+   * Sets the function mapping a vertex to the Number estimating its task
+   * cost, used to find critical paths; every task costs 1 by default.
+   */
+  public void setCostFunction(Transformer costFunction) {
+    this.costFunction = costFunction;
+  }
+
+  /**
+   * Starts running <code>task.transform(vertex)</code> for every vertex of
+   * the digraph and returns a Future whose value is the Map from vertices to
+   * the results of their tasks.
+   *
+   * @throws IllegalArgumentException if the digraph has a cycle
+   */
+  public Future submit(DigraphIteration digraph, Transformer task) {
+    Execution execution = new Execution(CsrDigraph.copyOf(digraph), task);
+    execution.start();
+    return execution;
+  }
+
+  /**
+   * Runs the tasks and waits for them to finish.
+   */
+  public Map execute(DigraphIteration digraph, Transformer task)
+      throws InterruptedException, ExecutionException {
+    return (Map)submit(digraph, task).get();
+  }
+
+  private static final int QUEUED = 0;
+  private static final int RUNNING = 1;
+  private static final int ABANDONED = 2;
+
+  private class Execution implements Future {
+    private CsrDigraph digraph;
+    private Transformer task;
+    private double[] priorities;
+    private int[] inDegrees;
+    private Object[] results;
+    private PriorityQueue ready;
+    private Set running = new HashSet();
+    private int remaining;
+    private boolean stopped;
+    private boolean dispatching;
+    private boolean cancelled;
+    private Throwable failure;
+    private Map resultMap;
+
+    Execution(CsrDigraph digraph, Transformer task) {
+      this.digraph = digraph;
+      this.task = task;
+      int order = digraph.order();
+      int[] topologicalOrder = new IntTopologicalSort(digraph).sort();
+      if (topologicalOrder.length < order)
+        throw new IllegalArgumentException("Digraph is not acyclic.");
+      priorities = new double[order];
+      for (int j = order - 1; j >= 0; j--) {
+        int v = topologicalOrder[j];
+        double longest = 0;
+        for (int i = 0; i < digraph.outDegree(v); i++)
+          longest = Math.max(longest, priorities[digraph.target(v, i)]);
+        priorities[v] = longest + cost(digraph.vertexAt(v));
+      }
+      inDegrees = new int[order];
+      results = new Object[order];
+      remaining = order;
+      ready = new PriorityQueue(Math.max(order, 1), new Comparator() {
+        public int compare(Object o1, Object o2) {
+          int v1 = ((Integer)o1).intValue();
+          int v2 = ((Integer)o2).intValue();
+          if (priorities[v1] != priorities[v2]) return (priorities[v1] > priorities[v2] ? -1 : 1);
+          return (v1 < v2 ? -1 : (v1 == v2 ? 0 : 1));
+        }
+      });
+    }
+
+    synchronized void start() {
+      for (int v = 0; v < inDegrees.length; v++) {
+        inDegrees[v] = digraph.inDegree(v);
+        if (inDegrees[v] == 0) ready.add(Integer.valueOf(v));
+      }
+      dispatch();
+    }
+
+    //an executor running tasks in the submitting thread calls complete() and
+    //so dispatch() again from inside submit(); the outer loop picks up the
+    //vertices made ready instead of recursing once per vertex
+    private void dispatch() {
+      if (dispatching) return;
+      dispatching = true;
+      try {
+        drainReady();
+      } finally {
+        dispatching = false;
+      }
+    }
+
+    private void drainReady() {
+      while (!stopped && running.size() < maxConcurrency && !ready.isEmpty()) {
+        Runner runner = new Runner(((Integer)ready.poll()).intValue());
+        running.add(runner);
+        try {
+          runner.future = executor.submit(runner);
+        } catch (RejectedExecutionException ex) {
+          running.remove(runner);
+          fail(ex);
+        }
+      }
+    }
+
+    synchronized boolean begin(Runner runner) {
+      if (runner.state == ABANDONED) return false;
+      runner.state = RUNNING;
+      return true;
+    }
+
+    synchronized void complete(Runner runner, Object result) {
+      running.remove(runner);
+      int v = runner.vertex;
+      results[v] = result;
+      remaining--;
+      if (!stopped) {
+        for (int i = 0; i < digraph.outDegree(v); i++) {
+          int w = digraph.target(v, i);
+          if (--inDegrees[w] == 0) ready.add(Integer.valueOf(w));
+        }
+        dispatch();
+      }
+      notifyAll();
+    }
+
+    synchronized void fail(Runner runner, Throwable ex) {
+      running.remove(runner);
+      fail(ex);
+    }
+
+    private void fail(Throwable ex) {
+      if (failure == null && !cancelled) failure = ex;
+      stop(false);
+      notifyAll();
+    }
+
+    private void stop(boolean mayInterruptIfRunning) {
+      stopped = true;
+      for (Iterator i = running.iterator(); i.hasNext();) {
+        Runner runner = (Runner)i.next();
+        if (runner.state == QUEUED) {
+          runner.state = ABANDONED;
+          if (runner.future != null) runner.future.cancel(false);
+          i.remove();
+        } else if (mayInterruptIfRunning && runner.future != null) runner.future.cancel(true);
+      }
+    }
+
+    private boolean isFinished() {
+      return remaining == 0 || (stopped && running.isEmpty());
+    }
+
+    public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+      if (isFinished() || cancelled) return false;
+      cancelled = true;
+      stop(mayInterruptIfRunning);
+      notifyAll();
+      return true;
+    }
+
+    public synchronized boolean isCancelled() {
+      return cancelled;
+    }
+
+    public synchronized boolean isDone() {
+      return cancelled || isFinished();
+    }
+
+    public synchronized Object get() throws InterruptedException, ExecutionException {
+      while (!cancelled && !isFinished()) wait();
+      return result();
+    }
+
+    public synchronized Object get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      while (!cancelled && !isFinished()) {
+        long left = deadline - System.nanoTime();
+        if (left <= 0) throw new TimeoutException();
+        TimeUnit.NANOSECONDS.timedWait(this, left);
+      }
+      return result();
+    }
+
+    private Object result() throws ExecutionException {
+      if (cancelled) throw new CancellationException();
+      if (failure != null) throw new ExecutionException(failure);
+      if (resultMap == null) {
+        resultMap = new HashMap(Math.max(results.length * 2, 16));
+        for (int v = 0; v < results.length; v++) resultMap.put(digraph.vertexAt(v), results[v]);
+      }
+      return resultMap;
+    }
+
+    private class Runner implements Runnable {
+      private int vertex;
+      private int state = QUEUED;
+      private Future future;
+
+      Runner(int vertex) {
+        this.vertex = vertex;
+      }
+
+      public void run() {
+        if (!begin(this)) return;
+        Object result;
+        try {
+          result = task.transform(digraph.vertexAt(vertex));
+        } catch (Throwable ex) {
+          fail(this, ex);
+          return;
+        }
+        complete(this, result);
+      }
+    }
+  }
+
+  private double cost(Object vertex) {
+    if (costFunction == null) return 1;
+    return ((Number)costFunction.transform(vertex)).doubleValue();
+  }
+}
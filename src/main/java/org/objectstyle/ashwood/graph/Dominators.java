@@ -0,0 +1,202 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+
+/**
+ * Dominators of the vertices reachable from a root, computed by the
+ * Lengauer-Tarjan algorithm in int arrays indexed by depth first number:
+ * semi-dominators are found in reverse preorder with a path-compressed
+ * forest, and immediate dominators derived from them in a final forward
+ * pass. A vertex <code>d</code> dominates <code>v</code> if every path from
+ * the root to <code>v</code> goes through <code>d</code>; the immediate
+ * dominators form a tree rooted at the root.
+ * <p>
+ * Post-dominators are the dominators of the reversed digraph, see
+ * postDominators().
+ */
+public class Dominators {
+  private CsrDigraph digraph;
+  //depth first number -> vertex index, and back (-1 if unreachable)
+  private int[] vertices;
+  private int[] numbers;
+  private int[] immediateDominators;
+  private int count;
+
+  public Dominators(DigraphIteration digraph, Object root) {
+    this.digraph = CsrDigraph.copyOf(digraph);
+    int r = this.digraph.indexOf(root);
+    if (r < 0) throw new IllegalArgumentException("Root " + root + " is not in the digraph.");
+    compute(r);
+  }
+
+  /**
+   * Returns the post-dominators of the digraph with respect to the exit
+   * vertex, i.e. the dominators of its reversal.
+   */
+  public static Dominators postDominators(DigraphIteration digraph, Object exit) {
+    return new Dominators(new ReversedIteration(digraph), exit);
+  }
+
+  /**
+   * Returns the immediate dominator of the vertex, or null for the root and
+   * vertices unreachable from it.
+   */
+  public Object getImmediateDominator(Object vertex) {
+    int v = digraph.indexOf(vertex);
+    if (v < 0 || numbers[v] <= 0) return null;
+    return digraph.vertexAt(vertices[immediateDominators[numbers[v]]]);
+  }
+
+  /**
+   * Tells whether <code>dominator</code> dominates <code>vertex</code>;
+   * every reachable vertex dominates itself.
+   */
+  public boolean dominates(Object dominator, Object vertex) {
+    int d = digraph.indexOf(dominator);
+    int v = digraph.indexOf(vertex);
+    if (d < 0 || v < 0 || numbers[d] < 0 || numbers[v] < 0) return false;
+    int target = numbers[d];
+    //immediate dominators have smaller depth first numbers
+    for (int n = numbers[v]; n >= target; n = immediateDominators[n])
+      if (n == target) return true;
+    return false;
+  }
+
+  /**
+   * Builds the dominator tree: its root is the digraph root, the parent of
+   * every other reachable vertex its immediate dominator. Arcs are null.
+   */
+  public ArrayTree getTree() {
+    ArrayTree tree = new ArrayTree(count);
+    if (count == 0) return tree;
+    tree.setRoot(digraph.vertexAt(vertices[0]));
+    for (int n = 1; n < count; n++)
+      tree.addChild(digraph.vertexAt(vertices[immediateDominators[n]]), digraph.vertexAt(vertices[n]), null);
+    return tree;
+  }
+
+  private void compute(int root) {
+    int order = digraph.order();
+    vertices = new int[order];
+    numbers = new int[order];
+    Arrays.fill(numbers, -1);
+    int[] dfsParents = new int[order];
+    number(root, dfsParents);
+
+    int[] semi = new int[count];
+    int[] ancestors = new int[count];
+    int[] labels = new int[count];
+    int[] bucketHeads = new int[count];
+    int[] bucketNext = new int[count];
+    int[] path = new int[count];
+    immediateDominators = new int[count];
+    for (int n = 0; n < count; n++) {
+      semi[n] = labels[n] = n;
+      ancestors[n] = bucketHeads[n] = -1;
+    }
+    for (int w = count - 1; w > 0; w--) {
+      int v = vertices[w];
+      for (int i = 0, degree = digraph.inDegree(v); i < degree; i++) {
+        int u = numbers[digraph.source(v, i)];
+        if (u < 0) continue;
+        int label = eval(u, ancestors, labels, semi, path);
+        if (semi[label] < semi[w]) semi[w] = semi[label];
+      }
+      bucketNext[w] = bucketHeads[semi[w]];
+      bucketHeads[semi[w]] = w;
+      int parent = dfsParents[w];
+      ancestors[w] = parent;
+      for (int u = bucketHeads[parent]; u >= 0; u = bucketNext[u]) {
+        int label = eval(u, ancestors, labels, semi, path);
+        immediateDominators[u] = (semi[label] < semi[u] ? label : parent);
+      }
+      bucketHeads[parent] = -1;
+    }
+    for (int w = 1; w < count; w++) {
+      if (immediateDominators[w] != semi[w])
+        immediateDominators[w] = immediateDominators[immediateDominators[w]];
+    }
+    immediateDominators[0] = 0;
+  }
+
+  //iterative preorder numbering; dfsParents is indexed by number
+  private void number(int root, int[] dfsParents) {
+    int order = digraph.order();
+    int[] stack = new int[order];
+    int[] positions = new int[order];
+    int depth = 0;
+    numbers[root] = count;
+    vertices[count] = root;
+    dfsParents[count++] = -1;
+    stack[depth] = root;
+    positions[depth++] = 0;
+    while (depth > 0) {
+      int v = stack[depth - 1];
+      if (positions[depth - 1] < digraph.outDegree(v)) {
+        int w = digraph.target(v, positions[depth - 1]++);
+        if (numbers[w] >= 0) continue;
+        numbers[w] = count;
+        vertices[count] = w;
+        dfsParents[count++] = numbers[v];
+        stack[depth] = w;
+        positions[depth++] = 0;
+      } else depth--;
+    }
+  }
+
+  private static int eval(int v, int[] ancestors, int[] labels, int[] semi, int[] path) {
+    if (ancestors[v] < 0) return v;
+    //collect the path to compress, then shorten it from the top down
+    int length = 0;
+    for (int u = v; ancestors[ancestors[u]] >= 0; u = ancestors[u]) path[length++] = u;
+    while (length > 0) {
+      int u = path[--length];
+      int a = ancestors[u];
+      if (semi[labels[a]] < semi[labels[u]]) labels[u] = labels[a];
+      ancestors[u] = ancestors[a];
+    }
+    return labels[v];
+  }
+}
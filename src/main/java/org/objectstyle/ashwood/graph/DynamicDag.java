@@ -0,0 +1,318 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+import java.io.Serializable;
+import org.apache.commons.collections.*;
+import org.objectstyle.ashwood.util.MutableInteger;
+
+/**
+ * Digraph wrapper that keeps the wrapped digraph acyclic and maintains a
+ * topological order as arcs are inserted, with the Pearce-Kelly algorithm.
+ * Every vertex has a rank, and ranks increase along every arc. An arc that
+ * agrees with the current ranks is accepted immediately. Otherwise only
+ * the vertices ranked between its endpoints are searched: the descendants
+ * of the destination and the ancestors of the origin in that range. The
+ * arc is rejected if the origin is among those descendants, and otherwise
+ * the two sets swap the ranks they occupy.
+ * <p>
+ * The wrapped digraph must only be modified through this wrapper, and it
+ * should answer incoming queries efficiently, like a bidirectional
+ * MapDigraph, which is what the default constructor uses.
+ */
+public class DynamicDag implements Digraph, Serializable {
+  private Digraph digraph;
+  //vertex -> MutableInteger rank
+  private Map ranks;
+  private int nextRank;
+
+  public DynamicDag() {
+    this(new MapDigraph(MapDigraph.HASHMAP_FACTORY, true));
+  }
+
+  /**
+   * Wraps an acyclic digraph.
+   *
+   * @throws IllegalArgumentException if the digraph has a cycle
+   */
+  public DynamicDag(Digraph digraph) {
+    this.digraph = digraph;
+    ranks = new HashMap(Math.max(digraph.order() * 2, 16));
+    IndegreeTopologicalSort sort = new IndegreeTopologicalSort(digraph);
+    while (sort.hasNext()) ranks.put(sort.next(), new MutableInteger(nextRank++));
+    if (!sort.getRemainder().isEmpty())
+      throw new IllegalArgumentException("Digraph is not acyclic.");
+  }
+
+  /**
+   * Returns the rank of the vertex in the maintained topological order, or
+   * -1 if the vertex is not in the digraph. Ranks are increasing along arcs
+   * but not necessarily contiguous.
+   */
+  public int topologicalIndex(Object vertex) {
+    MutableInteger rank = (MutableInteger)ranks.get(vertex);
+    return (rank != null ? rank.intValue() : -1);
+  }
+
+  /**
+   * Returns the vertices sorted by their current rank.
+   */
+  public List topologicalOrder() {
+    List vertices = new ArrayList(ranks.keySet());
+    Collections.sort(vertices, new RankComparator());
+    return vertices;
+  }
+
+  /**
+   * Tells whether putting the arc would close a cycle, without changing
+   * anything.
+   */
+  public boolean wouldCreateCycle(Object origin, Object destination) {
+    if (origin.equals(destination)) return true;
+    int upperBound = topologicalIndex(origin);
+    int lowerBound = topologicalIndex(destination);
+    if (upperBound < 0 || lowerBound < 0 || lowerBound > upperBound) return false;
+    return searchForward(destination, upperBound) == null;
+  }
+
+  public boolean addVertex(Object vertex) {
+    if (!digraph.addVertex(vertex)) return false;
+    rank(vertex);
+    return true;
+  }
+
+  public boolean addAllVertices(Collection vertices) {
+    boolean modified = false;
+    for (Iterator i = vertices.iterator(); i.hasNext();)
+      modified |= addVertex(i.next());
+    return modified;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the arc would close a cycle; the
+   * digraph is left unchanged in this case
+   */
+  public Object putArc(Object origin, Object destination, Object arc) {
+    if (origin.equals(destination))
+      throw new IllegalArgumentException("Arc " + origin + " -> " + destination + " is a loop.");
+    int upperBound = rank(origin).intValue();
+    int lowerBound = rank(destination).intValue();
+    if (lowerBound < upperBound) {
+      List forward = searchForward(destination, upperBound);
+      if (forward == null)
+        throw new IllegalArgumentException("Arc " + origin + " -> " + destination + " would create a cycle.");
+      List backward = searchBackward(origin, lowerBound);
+      reorder(backward, forward);
+    }
+    return digraph.putArc(origin, destination, arc);
+  }
+
+  public Object getArc(Object origin, Object destination) {
+    return digraph.getArc(origin, destination);
+  }
+
+  public boolean removeVertex(Object vertex) {
+    if (!digraph.removeVertex(vertex)) return false;
+    ranks.remove(vertex);
+    return true;
+  }
+
+  public boolean removeAllVertices(Collection vertices) {
+    boolean modified = false;
+    for (Iterator i = vertices.iterator(); i.hasNext();)
+      modified |= removeVertex(i.next());
+    return modified;
+  }
+
+  public Object removeArc(Object origin, Object destination) {
+    return digraph.removeArc(origin, destination);
+  }
+
+  public boolean removeIncoming(Object vertex) {
+    return digraph.removeIncoming(vertex);
+  }
+
+  public boolean removeOutgoing(Object vertex) {
+    return digraph.removeOutgoing(vertex);
+  }
+
+  public Iterator vertexIterator() {
+    return IteratorUtils.unmodifiableIterator(digraph.vertexIterator());
+  }
+
+  public ArcIterator arcIterator() {
+    return digraph.arcIterator();
+  }
+
+  public ArcIterator outgoingIterator(Object vertex) {
+    return digraph.outgoingIterator(vertex);
+  }
+
+  public ArcIterator incomingIterator(Object vertex) {
+    return digraph.incomingIterator(vertex);
+  }
+
+  public int order() {
+    return digraph.order();
+  }
+
+  public int size() {
+    return digraph.size();
+  }
+
+  public int outgoingSize(Object vertex) {
+    return digraph.outgoingSize(vertex);
+  }
+
+  public int incomingSize(Object vertex) {
+    return digraph.incomingSize(vertex);
+  }
+
+  public boolean containsVertex(Object vertex) {
+    return digraph.containsVertex(vertex);
+  }
+
+  public boolean containsAllVertices(Collection vertices) {
+    return digraph.containsAllVertices(vertices);
+  }
+
+  public boolean hasArc(Object origin, Object destination) {
+    return digraph.hasArc(origin, destination);
+  }
+
+  public boolean isEmpty() {
+    return digraph.isEmpty();
+  }
+
+  public boolean isOutgoingEmpty(Object vertex) {
+    return digraph.isOutgoingEmpty(vertex);
+  }
+
+  public boolean isIncomingEmpty(Object vertex) {
+    return digraph.isIncomingEmpty(vertex);
+  }
+
+  private MutableInteger rank(Object vertex) {
+    MutableInteger rank = (MutableInteger)ranks.get(vertex);
+    if (rank == null) {
+      if (nextRank == Integer.MAX_VALUE) compact();
+      rank = new MutableInteger(nextRank++);
+      ranks.put(vertex, rank);
+      digraph.addVertex(vertex);
+    }
+    return rank;
+  }
+
+  //renumbers the ranks contiguously from zero
+  private void compact() {
+    nextRank = 0;
+    for (Iterator i = topologicalOrder().iterator(); i.hasNext();)
+      ((MutableInteger)ranks.get(i.next())).setValue(nextRank++);
+  }
+
+  //descendants of start ranked below upperBound, or null if a descendant
+  //has rank upperBound, i.e. is the origin of the arc being inserted
+  private List searchForward(Object start, int upperBound) {
+    List visited = new ArrayList();
+    Set seen = new HashSet();
+    ArrayStack stack = new ArrayStack();
+    stack.push(start);
+    seen.add(start);
+    while (!stack.isEmpty()) {
+      Object vertex = stack.pop();
+      visited.add(vertex);
+      for (ArcIterator i = digraph.outgoingIterator(vertex); i.hasNext();) {
+        i.next();
+        Object child = i.getDestination();
+        int rank = topologicalIndex(child);
+        if (rank == upperBound) return null;
+        if (rank < upperBound && seen.add(child)) stack.push(child);
+      }
+    }
+    return visited;
+  }
+
+  //ancestors of start ranked above lowerBound
+  private List searchBackward(Object start, int lowerBound) {
+    List visited = new ArrayList();
+    Set seen = new HashSet();
+    ArrayStack stack = new ArrayStack();
+    stack.push(start);
+    seen.add(start);
+    while (!stack.isEmpty()) {
+      Object vertex = stack.pop();
+      visited.add(vertex);
+      for (ArcIterator i = digraph.incomingIterator(vertex); i.hasNext();) {
+        i.next();
+        Object parent = i.getOrigin();
+        if (topologicalIndex(parent) > lowerBound && seen.add(parent)) stack.push(parent);
+      }
+    }
+    return visited;
+  }
+
+  //gives the ancestors, then the descendants, the ranks they occupy together
+  //in increasing order, keeping the relative order within each set
+  private void reorder(List backward, List forward) {
+    Comparator comparator = new RankComparator();
+    Collections.sort(backward, comparator);
+    Collections.sort(forward, comparator);
+    int[] pool = new int[backward.size() + forward.size()];
+    List vertices = new ArrayList(pool.length);
+    vertices.addAll(backward);
+    vertices.addAll(forward);
+    for (int i = 0; i < pool.length; i++) pool[i] = topologicalIndex(vertices.get(i));
+    Arrays.sort(pool);
+    for (int i = 0; i < pool.length; i++)
+      ((MutableInteger)ranks.get(vertices.get(i))).setValue(pool[i]);
+  }
+
+  private class RankComparator implements Comparator, Serializable {
+    public int compare(Object o1, Object o2) {
+      int rank1 = topologicalIndex(o1);
+      int rank2 = topologicalIndex(o2);
+      return (rank1 < rank2 ? -1 : (rank1 == rank2 ? 0 : 1));
+    }
+  }
+}
@@ -0,0 +1,247 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+
+/**
+ * Lazily enumerates the elementary cycles of a digraph with Johnson's
+ * algorithm. Each cycle is returned exactly once, as a list of vertices
+ * starting with its least vertex (in vertexIterator() order). For every
+ * start vertex the search is confined to the strongly connected component
+ * of that vertex among the vertices not yet used as a start, and vertices
+ * that cannot lead back to the start stay blocked, so the work between two
+ * cycles is O(V+E).
+ * <p>
+ * The search can be capped by the maximal cycle length (number of
+ * vertices) and the maximal number of cycles returned; a value <= 0 means
+ * no limit.
+ */
+public class ElementaryCycleSearch extends Algorithm {
+  private CsrDigraph digraph;
+  private int maxLength;
+  private int maxCount;
+  private int count;
+
+  private int[] sccIds;
+  private int[] forwardStamps;
+  private int[] allowedStamps;
+  private int[] queue;
+
+  private boolean[] blocked;
+  private int[][] blockedBy;
+  private int[] blockedBySizes;
+  private int[] unblockStack;
+
+  private int[] path;
+  private int[] arcIndices;
+  private boolean[] found;
+  private int depth;
+  private int start = -1;
+
+  private List nextCycle;
+
+  public ElementaryCycleSearch(DigraphIteration digraph) {
+    this(digraph, 0, 0);
+  }
+
+  public ElementaryCycleSearch(DigraphIteration digraph, int maxLength, int maxCount) {
+    this.digraph = (digraph instanceof CsrDigraph ? (CsrDigraph)digraph : CsrDigraph.copyOf(digraph));
+    this.maxLength = (maxLength > 0 ? maxLength : Integer.MAX_VALUE);
+    this.maxCount = (maxCount > 0 ? maxCount : Integer.MAX_VALUE);
+    int order = this.digraph.order();
+    sccIds = new int[order];
+    StrongConnection scc = new StrongConnection(this.digraph, CollectionFactory.ARRAYLIST_FACTORY);
+    while (scc.hasNext()) scc.next();
+    for (int v = 0; v < order; v++) sccIds[v] = scc.getComponentId(this.digraph.vertexAt(v));
+    forwardStamps = new int[order];
+    allowedStamps = new int[order];
+    queue = new int[order];
+    blocked = new boolean[order];
+    blockedBy = new int[order][];
+    blockedBySizes = new int[order];
+    unblockStack = new int[order];
+    path = new int[order];
+    arcIndices = new int[order];
+    found = new boolean[order];
+    findNext();
+  }
+
+  public boolean hasNext() {
+    return nextCycle != null;
+  }
+
+  public Object next() {
+    if (nextCycle == null) throw new NoSuchElementException();
+    List cycle = nextCycle;
+    nextCycle = null;
+    if (++count < maxCount) findNext();
+    return cycle;
+  }
+
+  private void findNext() {
+    int order = digraph.order();
+    while (true) {
+      if (depth == 0) {
+        if (++start >= order) return;
+        if (!restrict(start)) continue;
+        blocked[start] = true;
+        path[0] = start;
+        arcIndices[0] = 0;
+        found[0] = false;
+        depth = 1;
+      }
+      while (depth > 0) {
+        int top = depth - 1;
+        int v = path[top];
+        if (arcIndices[top] < digraph.outDegree(v)) {
+          int w = digraph.target(v, arcIndices[top]++);
+          if (allowedStamps[w] != start + 1) continue;
+          if (w == start) {
+            found[top] = true;
+            emit();
+            return;
+          }
+          if (blocked[w]) continue;
+          if (depth >= maxLength) {
+            //a truncated branch proves nothing, do not leave v blocked
+            found[top] = true;
+            continue;
+          }
+          blocked[w] = true;
+          path[depth] = w;
+          arcIndices[depth] = 0;
+          found[depth] = false;
+          depth++;
+        } else {
+          depth--;
+          if (found[top]) {
+            unblock(v);
+            if (top > 0) found[top - 1] = true;
+          } else {
+            for (int i = 0, degree = digraph.outDegree(v); i < degree; i++) {
+              int w = digraph.target(v, i);
+              if (allowedStamps[w] == start + 1) addBlockedBy(w, v);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private void emit() {
+    List cycle = new ArrayList(depth);
+    for (int i = 0; i < depth; i++) cycle.add(digraph.vertexAt(path[i]));
+    nextCycle = cycle;
+  }
+
+  //marks the strongly connected component of s within the vertices >= s,
+  //returns false if it cannot contain a cycle
+  private boolean restrict(int s) {
+    int stamp = s + 1;
+    int component = sccIds[s];
+    int head = 0, tail = 0;
+    forwardStamps[s] = stamp;
+    queue[tail++] = s;
+    boolean closes = false;
+    while (head < tail) {
+      int v = queue[head++];
+      for (int i = 0, degree = digraph.outDegree(v); i < degree; i++) {
+        int w = digraph.target(v, i);
+        if (w == s) closes = true;
+        if (w > s && sccIds[w] == component && forwardStamps[w] != stamp) {
+          forwardStamps[w] = stamp;
+          queue[tail++] = w;
+        }
+      }
+    }
+    if (!closes) return false;
+    head = tail = 0;
+    allowedStamps[s] = stamp;
+    queue[tail++] = s;
+    while (head < tail) {
+      int v = queue[head++];
+      blocked[v] = false;
+      blockedBySizes[v] = 0;
+      for (int i = 0, degree = digraph.inDegree(v); i < degree; i++) {
+        int u = digraph.source(v, i);
+        if (forwardStamps[u] == stamp && allowedStamps[u] != stamp) {
+          allowedStamps[u] = stamp;
+          queue[tail++] = u;
+        }
+      }
+    }
+    return true;
+  }
+
+  private void addBlockedBy(int w, int v) {
+    int size = blockedBySizes[w];
+    int[] list = blockedBy[w];
+    for (int i = 0; i < size; i++) if (list[i] == v) return;
+    if (list == null || size == list.length) {
+      int[] tmp = new int[size == 0 ? 4 : size * 2];
+      if (list != null) System.arraycopy(list, 0, tmp, 0, size);
+      blockedBy[w] = list = tmp;
+    }
+    list[size] = v;
+    blockedBySizes[w] = size + 1;
+  }
+
+  private void unblock(int u) {
+    int top = 0;
+    blocked[u] = false;
+    unblockStack[top++] = u;
+    while (top > 0) {
+      int v = unblockStack[--top];
+      int[] list = blockedBy[v];
+      for (int i = blockedBySizes[v] - 1; i >= 0; i--) {
+        int w = list[i];
+        if (blocked[w]) {
+          blocked[w] = false;
+          unblockStack[top++] = w;
+        }
+      }
+      blockedBySizes[v] = 0;
+    }
+  }
+}
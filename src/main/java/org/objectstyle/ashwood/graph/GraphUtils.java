@@ -51,6 +51,7 @@ import org.objectstyle.ashwood.util.*;
 public class GraphUtils {
   public static final Predicate TRUE_PREDICATE = ConstPredicate.TRUE;
   public static final Predicate FALSE_PREDICATE = ConstPredicate.FALSE;
+  public static final int NO_LEVEL = Integer.MIN_VALUE;
 
   private GraphUtils() {
   }
@@ -203,16 +204,10 @@ public class GraphUtils {
     if (vertexLevelMap == null)
       vertexLevelMap = new HashMap(digraph.order());
 
-    for (Iterator i = digraph.vertexIterator(); i.hasNext(); ) {
-      Object rootCandidate = i.next();
-      if (digraph.incomingSize(rootCandidate) == 0)
-        computeLevels(vertexLevelMap,
-                      digraph,
-                      rootCandidate,
-                      longest);
-    }
-
-    return vertexLevelMap;
+    CsrDigraph snapshot = CsrDigraph.copyOf(digraph);
+    int[] levels = readLevels(vertexLevelMap, snapshot);
+    computeLevels(levels, snapshot, roots(snapshot), longest);
+    return writeLevels(vertexLevelMap, snapshot, levels);
   }
 
   public static Map computeLevels(Map vertexLevelMap,
@@ -222,92 +217,249 @@ public class GraphUtils {
     if (vertexLevelMap == null)
       vertexLevelMap = new HashMap();
 
-    MutableInteger rootLevel = (MutableInteger)vertexLevelMap.get(root);
-    if (rootLevel == null) {
-      rootLevel = new MutableInteger(0);
-      vertexLevelMap.put(root, rootLevel);
-    }
+    CsrDigraph snapshot = reachableSnapshot(digraph, root);
+    int[] levels = readLevels(vertexLevelMap, snapshot);
+    computeLevels(levels, snapshot, new int[] {snapshot.indexOf(root)}, longest);
+    return writeLevels(vertexLevelMap, snapshot, levels);
+  }
 
-    for (ArcIterator i = digraph.outgoingIterator(root); i.hasNext(); ) {
-      i.next();
-      Object child = i.getDestination();
-      int childLevelCandidate = rootLevel.intValue()+1;
-      MutableInteger childLevel = (MutableInteger)vertexLevelMap.get(child);
-      if (childLevel == null) {
-        childLevel = new MutableInteger(childLevelCandidate);
-        vertexLevelMap.put(child, childLevel);
-        computeLevels(vertexLevelMap, digraph, child, longest);
-      } else if ((longest && childLevel.intValue() < childLevelCandidate) ||
-                 (!longest && childLevel.intValue() > childLevelCandidate)) {
-        childLevel.setValue(childLevelCandidate);
-        computeLevels(vertexLevelMap, digraph, child, longest);
+  public static Map shiftLevelsDown(Map vertexLevelMap, Digraph digraph) {
+    CsrDigraph snapshot = CsrDigraph.copyOf(digraph);
+    int[] levels = readLevels(vertexLevelMap, snapshot);
+    shiftLevelsDown(levels, snapshot, roots(snapshot));
+    return writeLevels(vertexLevelMap, snapshot, levels);
+  }
+
+  public static Map shiftLevelsDown(Map vertexLevelMap,
+                                    DigraphIteration digraph,
+                                    Object root) {
+    CsrDigraph snapshot = reachableSnapshot(digraph, root);
+    int[] levels = readLevels(vertexLevelMap, snapshot);
+    shiftLevelsDown(levels, snapshot, new int[] {snapshot.indexOf(root)});
+    return writeLevels(vertexLevelMap, snapshot, levels);
+  }
+
+  //copies only the part of the digraph reachable from the root, so a loop
+  //over roots does not pay for the whole digraph on every call
+  private static CsrDigraph reachableSnapshot(DigraphIteration digraph, Object root) {
+    DigraphBuilder builder = new DigraphBuilder();
+    VertexIndex reached = new VertexIndex();
+    builder.addVertex(root);
+    reached.add(root);
+    for (int head = 0; head < reached.size(); head++) {
+      Object vertex = reached.vertexAt(head);
+      for (ArcIterator i = digraph.outgoingIterator(vertex); i.hasNext(); ) {
+        Object arc = i.next();
+        reached.add(i.getDestination());
+        builder.addArc(vertex, i.getDestination(), arc);
       }
     }
-
-    return vertexLevelMap;
+    return builder.toCsrDigraph();
   }
 
-  public static Map shiftLevelsDown(Map vertexLevelMap, Digraph digraph) {
-    for (Iterator i = digraph.vertexIterator(); i.hasNext(); ) {
-      Object rootCandidate = i.next();
-      if (digraph.incomingSize(rootCandidate) == 0)
-        shiftLevelsDown(vertexLevelMap, digraph, rootCandidate);
+  private static int[] readLevels(Map vertexLevelMap, CsrDigraph snapshot) {
+    int[] levels = new int[snapshot.order()];
+    for (int v = 0; v < levels.length; v++) {
+      Number level = (Number)vertexLevelMap.get(snapshot.vertexAt(v));
+      levels[v] = (level != null ? level.intValue() : NO_LEVEL);
     }
+    return levels;
+  }
 
+  private static Map writeLevels(Map vertexLevelMap, CsrDigraph snapshot, int[] levels) {
+    for (int v = 0; v < levels.length; v++) {
+      if (levels[v] == NO_LEVEL) continue;
+      Object vertex = snapshot.vertexAt(v);
+      Object level = vertexLevelMap.get(vertex);
+      //readLevels accepts any Number, replace the ones that are not mutable
+      if (level instanceof MutableInteger) ((MutableInteger)level).setValue(levels[v]);
+      else vertexLevelMap.put(vertex, new MutableInteger(levels[v]));
+    }
     return vertexLevelMap;
   }
 
-  public static Map shiftLevelsDown(Map vertexLevelMap,
-                                    DigraphIteration digraph,
-                                    Object root) {
-    int minChildLevel = Integer.MAX_VALUE;
-    for (ArcIterator i = digraph.outgoingIterator(root); i.hasNext(); ) {
-      i.next();
-      Object child = i.getDestination();
-      shiftLevelsDown(vertexLevelMap, digraph, child);
-      MutableInteger childLevel = (MutableInteger)vertexLevelMap.get(child);
-      minChildLevel = (minChildLevel <= childLevel.intValue() ?
-                       minChildLevel :
-                       childLevel.intValue());
+  /**
+   * Returns the levels of all vertices counted from the vertices without
+   * incoming arcs, NO_LEVEL for vertices that cannot be leveled.
+   */
+  public static int[] computeLevels(IntDigraph digraph, boolean longest) {
+    int[] levels = new int[digraph.order()];
+    Arrays.fill(levels, NO_LEVEL);
+    return computeLevels(levels, digraph, roots(digraph), longest);
+  }
+
+  /**
+   * Relaxes the levels of the vertices reachable from the roots, a root
+   * starting at its current level or 0 if it has NO_LEVEL. A vertex reached
+   * from a root or from a vertex changed by this call is raised to one more
+   * than that vertex when computing longest levels and lowered to it when
+   * computing shortest ones; levels already set are kept when the new one
+   * is not better, so calls for several roots merge their results. Longest
+   * levels are relaxed in topological order, so they are only defined for
+   * the acyclic part of the digraph; shortest ones come from a breadth
+   * first search. Both run in O(V+E) without recursion.
+   */
+  public static int[] computeLevels(int[] levels, IntDigraph digraph, int[] roots, boolean longest) {
+    for (int i = 0; i < roots.length; i++)
+      if (levels[roots[i]] == NO_LEVEL) levels[roots[i]] = 0;
+    if (longest) {
+      long[] changed = BitUtils.create(digraph.order());
+      for (int i = 0; i < roots.length; i++) BitUtils.set(changed, roots[i]);
+      int[] order = topologicalOrder(digraph, reach(digraph, roots));
+      for (int k = 0; k < order.length; k++) {
+        int v = order[k];
+        if (!BitUtils.get(changed, v)) continue;
+        int childLevel = levels[v] + 1;
+        for (int i = 0, degree = digraph.outDegree(v); i < degree; i++) {
+          int w = digraph.target(v, i);
+          if (levels[w] == NO_LEVEL || levels[w] < childLevel) {
+            levels[w] = childLevel;
+            BitUtils.set(changed, w);
+          }
+        }
+      }
+    } else {
+      //roots may start at different levels: merge them into the FIFO by level
+      int[] sortedRoots = sortByLevel(roots, levels);
+      long[] seen = BitUtils.create(digraph.order());
+      int[] queue = new int[digraph.order()];
+      int head = 0, tail = 0, r = 0;
+      while (head < tail || r < sortedRoots.length) {
+        int v;
+        if (r < sortedRoots.length &&
+            (head == tail || levels[sortedRoots[r]] <= levels[queue[head]])) v = sortedRoots[r++];
+        else v = queue[head++];
+        if (!BitUtils.add(seen, v)) continue;
+        int childLevel = levels[v] + 1;
+        for (int i = 0, degree = digraph.outDegree(v); i < degree; i++) {
+          int w = digraph.target(v, i);
+          //levels leave the queue in ascending order, so w is lowered once
+          if (levels[w] == NO_LEVEL || levels[w] > childLevel) {
+            levels[w] = childLevel;
+            queue[tail++] = w;
+          }
+        }
+      }
     }
+    return levels;
+  }
 
-    if (minChildLevel != Integer.MAX_VALUE) {
-      MutableInteger rootLevel = (MutableInteger)vertexLevelMap.get(root);
-      rootLevel.setValue(minChildLevel - 1);
+  /**
+   * Moves every vertex reachable from the roots that has children to one
+   * level above its lowest child, processing vertices in reverse
+   * topological order.
+   */
+  public static int[] shiftLevelsDown(int[] levels, IntDigraph digraph, int[] roots) {
+    int[] order = topologicalOrder(digraph, reach(digraph, roots));
+    for (int k = order.length - 1; k >= 0; k--) {
+      int v = order[k];
+      int minChildLevel = Integer.MAX_VALUE;
+      for (int i = 0, degree = digraph.outDegree(v); i < degree; i++) {
+        int childLevel = levels[digraph.target(v, i)];
+        if (childLevel != NO_LEVEL && childLevel < minChildLevel) minChildLevel = childLevel;
+      }
+      if (minChildLevel != Integer.MAX_VALUE) levels[v] = minChildLevel - 1;
     }
+    return levels;
+  }
 
-    return vertexLevelMap;
+  private static int[] sortByLevel(int[] vertices, int[] levels) {
+    long[] keys = new long[vertices.length];
+    for (int i = 0; i < vertices.length; i++)
+      keys[i] = ((long)levels[vertices[i]] << 32) | vertices[i];
+    Arrays.sort(keys);
+    int[] sorted = new int[vertices.length];
+    for (int i = 0; i < keys.length; i++) sorted[i] = (int)keys[i];
+    return sorted;
+  }
+
+  private static int[] roots(IntDigraph digraph) {
+    int count = 0;
+    for (int v = 0; v < digraph.order(); v++) if (digraph.inDegree(v) == 0) count++;
+    int[] roots = new int[count];
+    count = 0;
+    for (int v = 0; v < digraph.order(); v++) if (digraph.inDegree(v) == 0) roots[count++] = v;
+    return roots;
+  }
+
+  private static long[] reach(IntDigraph digraph, int[] roots) {
+    long[] reached = BitUtils.create(digraph.order());
+    int[] queue = new int[digraph.order()];
+    int head = 0, tail = 0;
+    for (int i = 0; i < roots.length; i++)
+      if (BitUtils.add(reached, roots[i])) queue[tail++] = roots[i];
+    while (head < tail) {
+      int v = queue[head++];
+      for (int i = 0, degree = digraph.outDegree(v); i < degree; i++) {
+        int w = digraph.target(v, i);
+        if (BitUtils.add(reached, w)) queue[tail++] = w;
+      }
+    }
+    return reached;
+  }
+
+  //Kahn's sort of the subgraph induced by the reached vertices
+  private static int[] topologicalOrder(IntDigraph digraph, long[] reached) {
+    int order = digraph.order();
+    int[] inDegrees = new int[order];
+    for (int v = 0; v < order; v++) {
+      if (!BitUtils.get(reached, v)) continue;
+      for (int i = 0, degree = digraph.outDegree(v); i < degree; i++)
+        inDegrees[digraph.target(v, i)]++;
+    }
+    int[] queue = new int[order];
+    int head = 0, tail = 0;
+    for (int v = 0; v < order; v++)
+      if (BitUtils.get(reached, v) && inDegrees[v] == 0) queue[tail++] = v;
+    while (head < tail) {
+      int v = queue[head++];
+      for (int i = 0, degree = digraph.outDegree(v); i < degree; i++) {
+        int w = digraph.target(v, i);
+        if (--inDegrees[w] == 0) queue[tail++] = w;
+      }
+    }
+    int[] result = new int[tail];
+    System.arraycopy(queue, 0, result, 0, tail);
+    return result;
   }
 
   public static boolean isTree(Digraph digraph) {
+    return toTree(digraph) != null;
+  }
+
+  /**
+   * Copies the digraph into an ArrayTree, rooted at its vertex with no
+   * incoming arcs, or returns null if the digraph is not a tree.
+   */
+  public static ArrayTree toTree(Digraph digraph) {
     Object root = null;
     for (Iterator i = digraph.vertexIterator(); i.hasNext(); ) {
       Object vertex = i.next();
-      int inSize = digraph.incomingSize(vertex);
-      if (inSize == 0) {
+      if (digraph.incomingSize(vertex) == 0) {
         root = vertex;
         break;
       }
     }
 
     //not a tree - no vertex with 0 in-degree
-    if (root == null) return false;
-
-    //try to reach all vertices from the root candidate
-    BreadthFirstSearch traversal = new BreadthFirstSearch(digraph, root);
-    while (traversal.isValidTree() && traversal.hasNext())
-      traversal.next();
-
-    //not a tree - one of vertices has been seen more than once by the BFS
-    if (!traversal.isValidTree()) return false;
+    if (root == null) return null;
+
+    //the tree itself marks the vertices seen by the breadth first walk
+    ArrayTree tree = new ArrayTree(digraph.order());
+    tree.setRoot(root);
+    for (int head = 0; head < tree.order(); head++) {
+      Object vertex = tree.vertexAt(head);
+      for (ArcIterator i = digraph.outgoingIterator(vertex); i.hasNext(); ) {
+        Object arc = i.next();
+        Object child = i.getDestination();
+        //not a tree - the vertex has been reached twice
+        if (tree.containsVertex(child)) return null;
+        tree.addChild(vertex, child, arc);
+      }
+    }
 
     //has every vertex been reached?
-    Set seenVertices = traversal.getSeenVertices();
-    for (Iterator i = digraph.vertexIterator(); i.hasNext(); )
-      if (!seenVertices.contains(i.next())) return false;
-
-    //all tests are passed - good!
-    return true;
+    return (tree.order() == digraph.order() ? tree : null);
   }
 
   public static List findCycles(DigraphIteration graph) {
@@ -353,4 +505,15 @@ public class GraphUtils {
     }
     return cycles;
   }
+
+  /**
+   * Returns a lazy iterator over the elementary cycles of the digraph, each
+   * reported once as a List of vertices. Unlike findCycles(), which only
+   * collects the cycles closed by DFS back arcs, the enumeration is
+   * complete; maxLength and maxCount (<= 0 for no limit) let callers stop
+   * early.
+   */
+  public static Algorithm findElementaryCycles(DigraphIteration graph, int maxLength, int maxCount) {
+    return new ElementaryCycleSearch(graph, maxLength, maxCount);
+  }
 }
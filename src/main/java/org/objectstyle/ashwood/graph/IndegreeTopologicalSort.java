@@ -45,58 +45,63 @@ package org.objectstyle.ashwood.graph;
 import java.util.*;
 import org.apache.commons.collections.*;
 
+/**
+ * Kahn's topological sort. In-degrees are counted in one pass over the arcs
+ * and vertices whose in-degree drops to zero are queued, so the whole sort
+ * is O(V+E). If the digraph has cycles the iteration stops early and
+ * getRemainder() returns the vertices that could not be sorted.
+ */
 public class IndegreeTopologicalSort extends Algorithm {
-  private Digraph digraph;
-  private LinkedList vertices = new LinkedList();
+  private DigraphIteration digraph;
   private Map inDegrees = new HashMap();
-  private ListIterator current;
+  private Buffer queue = new UnboundedFifoBuffer();
 
-  public IndegreeTopologicalSort(Digraph digraph) {
+  public IndegreeTopologicalSort(DigraphIteration digraph) {
     this.digraph = digraph;
+    for (Iterator i = digraph.vertexIterator(); i.hasNext();) {
+      inDegrees.put(i.next(), new InDegree());
+    }
+    for (ArcIterator i = digraph.arcIterator(); i.hasNext();) {
+      i.next();
+      ((InDegree)inDegrees.get(i.getDestination())).value++;
+    }
     for (Iterator i = digraph.vertexIterator(); i.hasNext();) {
       Object vertex = i.next();
-      vertices.add(vertex);
-      inDegrees.put(vertex, new InDegree(digraph.incomingSize(vertex)));
+      if (((InDegree)inDegrees.get(vertex)).value == 0) queue.add(vertex);
     }
-    current = vertices.listIterator();
   }
 
   public boolean hasNext() {
-    return !vertices.isEmpty();
+    return !queue.isEmpty();
   }
 
   public Object next() {
-    boolean progress = true;
-    while (hasNext()) {
-      if (!current.hasNext()) {
-        if (!progress) break;
-        progress = false;
-        current = vertices.listIterator();
-      }
-      Object vertex = current.next();
-      InDegree indegree = (InDegree)inDegrees.get(vertex);
-      if (indegree.value == 0) {
-        removeVertex(vertex);
-        current.remove();
-        return vertex;
-      }
-    }
-    return null;
-  }
-
-  private void removeVertex(Object vertex) {
+    if (queue.isEmpty()) throw new NoSuchElementException();
+    Object vertex = queue.remove();
     for (ArcIterator i = digraph.outgoingIterator(vertex); i.hasNext();) {
       i.next();
       Object dst = i.getDestination();
       InDegree indegree = (InDegree)inDegrees.get(dst);
-      indegree.value--;
+      if (--indegree.value == 0) queue.add(dst);
     }
+    return vertex;
+  }
+
+  /**
+   * Returns the vertices still carrying incoming arcs, i.e. once the
+   * iteration is exhausted, the vertices on or reachable from a cycle.
+   * The collection is empty for an acyclic digraph.
+   */
+  public Collection getRemainder() {
+    List remainder = new ArrayList();
+    for (Iterator i = digraph.vertexIterator(); i.hasNext();) {
+      Object vertex = i.next();
+      if (((InDegree)inDegrees.get(vertex)).value > 0) remainder.add(vertex);
+    }
+    return remainder;
   }
 
   private static class InDegree {
     int value;
-    InDegree(int value) {
-      InDegree.this.value = value;
-    }
   }
 }
@@ -0,0 +1,128 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.Arrays;
+import org.objectstyle.ashwood.util.BitUtils;
+
+/**
+ * Breadth first search over an IntDigraph. Levels are recorded in a
+ * primitive array (-1 for vertices not reached), the queue is a plain int
+ * array sized to the digraph order.
+ */
+public class IntBreadthFirstSearch {
+  private IntDigraph digraph;
+  private ArcCursor cursor;
+  private long[] visited;
+  private int[] queue;
+  private int head, tail;
+  private int[] level;
+
+  public IntBreadthFirstSearch(IntDigraph digraph) {
+    this.digraph = digraph;
+    cursor = new ArcCursor(digraph);
+    int order = digraph.order();
+    visited = BitUtils.create(order);
+    queue = new int[order];
+    level = new int[order];
+    Arrays.fill(level, -1);
+  }
+
+  public void reset(int root) {
+    clear();
+    seed(root);
+  }
+
+  public void reset(int[] roots) {
+    clear();
+    for (int i = 0; i < roots.length; i++) seed(roots[i]);
+  }
+
+  private void clear() {
+    Arrays.fill(visited, 0L);
+    Arrays.fill(level, -1);
+    head = tail = 0;
+  }
+
+  private void seed(int root) {
+    if (BitUtils.add(visited, root)) {
+      queue[tail++] = root;
+      level[root] = 0;
+    }
+  }
+
+  public boolean hasNext() {
+    return head < tail;
+  }
+
+  public int next() {
+    if (head >= tail) throw new java.util.NoSuchElementException();
+    int origin = queue[head++];
+    int childLevel = level[origin] + 1;
+    for (cursor.reset(origin); cursor.hasNext();) {
+      int dst = cursor.next();
+      if (BitUtils.add(visited, dst)) {
+        queue[tail++] = dst;
+        level[dst] = childLevel;
+      }
+    }
+    return origin;
+  }
+
+  public int getLevel(int vertex) {
+    return level[vertex];
+  }
+
+  public boolean isVisited(int vertex) {
+    return BitUtils.get(visited, vertex);
+  }
+
+  /**
+   * Runs the search to completion and returns the level array, which is
+   * owned by this search and overwritten by the next reset().
+   */
+  public int[] traverse() {
+    while (head < tail) next();
+    return level;
+  }
+}
@@ -0,0 +1,134 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import org.objectstyle.ashwood.util.BitUtils;
+
+/**
+ * Depth first search over an IntDigraph reporting vertices in preorder.
+ * The visited set survives start() calls, so a whole DFS forest can be
+ * walked by starting from every vertex in turn; reset() forgets it.
+ * Nothing is allocated once the search is constructed.
+ */
+public class IntDepthFirstSearch {
+  private IntDigraph digraph;
+  private ArcCursor cursor;
+  private long[] visited;
+  private int[] vertexStack;
+  //cursor positions of the vertices on the stack
+  private int[] positionStack;
+  private int depth;
+  private int pending = -1;
+
+  public IntDepthFirstSearch(IntDigraph digraph) {
+    this.digraph = digraph;
+    cursor = new ArcCursor(digraph);
+    int order = digraph.order();
+    visited = BitUtils.create(order);
+    vertexStack = new int[order];
+    positionStack = new int[order];
+  }
+
+  /**
+   * Starts a new tree at the root. Returns false if the root has already
+   * been visited.
+   */
+  public boolean start(int root) {
+    depth = 0;
+    pending = -1;
+    if (!BitUtils.add(visited, root)) return false;
+    pending = root;
+    return true;
+  }
+
+  public void reset() {
+    java.util.Arrays.fill(visited, 0L);
+    depth = 0;
+    pending = -1;
+  }
+
+  public boolean hasNext() {
+    return pending >= 0;
+  }
+
+  public int next() {
+    int vertex = pending;
+    if (vertex < 0) throw new java.util.NoSuchElementException();
+    vertexStack[depth] = vertex;
+    positionStack[depth] = cursor.reset(vertex).getPosition();
+    depth++;
+    pending = -1;
+    while (depth > 0) {
+      int top = depth - 1;
+      cursor.reset(vertexStack[top], positionStack[top]);
+      while (cursor.hasNext()) {
+        int dst = cursor.next();
+        if (BitUtils.add(visited, dst)) {
+          positionStack[top] = cursor.getPosition();
+          pending = dst;
+          return vertex;
+        }
+      }
+      depth--;
+    }
+    return vertex;
+  }
+
+  public boolean isVisited(int vertex) {
+    return BitUtils.get(visited, vertex);
+  }
+
+  /**
+   * Runs the search from root to completion and returns the number of
+   * newly visited vertices.
+   */
+  public int traverse(int root) {
+    int count = 0;
+    if (!start(root)) return 0;
+    while (hasNext()) {
+      next();
+      count++;
+    }
+    return count;
+  }
+}
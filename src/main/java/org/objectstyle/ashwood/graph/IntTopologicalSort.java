@@ -0,0 +1,97 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+/**
+ * Kahn's topological sort over an IntDigraph. Vertices are returned as soon
+ * as their in-degree drops to zero; if the digraph has cycles the sort stops
+ * early and isComplete() reports false.
+ */
+public class IntTopologicalSort {
+  private IntDigraph digraph;
+  private ArcCursor cursor;
+  private int[] inDegrees;
+  private int[] queue;
+  private int head, tail;
+
+  public IntTopologicalSort(IntDigraph digraph) {
+    this.digraph = digraph;
+    cursor = new ArcCursor(digraph);
+    int order = digraph.order();
+    inDegrees = new int[order];
+    queue = new int[order];
+    for (int v = 0; v < order; v++) {
+      inDegrees[v] = digraph.inDegree(v);
+      if (inDegrees[v] == 0) queue[tail++] = v;
+    }
+  }
+
+  public boolean hasNext() {
+    return head < tail;
+  }
+
+  public int next() {
+    if (head >= tail) throw new java.util.NoSuchElementException();
+    int origin = queue[head++];
+    for (cursor.reset(origin); cursor.hasNext();) {
+      int dst = cursor.next();
+      if (--inDegrees[dst] == 0) queue[tail++] = dst;
+    }
+    return origin;
+  }
+
+  public boolean isComplete() {
+    return head == digraph.order();
+  }
+
+  /**
+   * Runs the sort to completion and returns the vertices in topological
+   * order; the array is shorter than order() if the digraph has cycles.
+   */
+  public int[] sort() {
+    while (head < tail) next();
+    int[] result = new int[tail];
+    System.arraycopy(queue, 0, result, 0, tail);
+    return result;
+  }
+}
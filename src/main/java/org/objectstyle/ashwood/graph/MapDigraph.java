@@ -52,6 +52,8 @@ public class MapDigraph implements Digraph, Serializable {
 
   private Factory mapFactory;
   private Map graph;
+  //destination -> (origin -> arc), maintained only in bidirectional mode
+  private Map reverseGraph;
   private int size;
 
   public MapDigraph() {
@@ -59,13 +61,28 @@ public class MapDigraph implements Digraph, Serializable {
   }
 
   public MapDigraph(Factory mapFactory) {
+    this(mapFactory, false);
+  }
+
+  /**
+   * Creates a digraph which, if <code>bidirectional</code> is set, also keeps
+   * the predecessor map of every vertex up to date, so that incoming queries
+   * and vertex removal cost O(in-degree) instead of a sweep over all vertices.
+   */
+  public MapDigraph(Factory mapFactory, boolean bidirectional) {
     this.mapFactory = mapFactory != null ? mapFactory : HASHMAP_FACTORY;
     graph = createMap();
+    if (bidirectional) reverseGraph = createMap();
+  }
+
+  public boolean isBidirectional() {
+    return reverseGraph != null;
   }
 
   public boolean addVertex(Object vertex) {
     if (graph.containsKey(vertex)) return false;
     graph.put(vertex, createMap());
+    if (reverseGraph != null) reverseGraph.put(vertex, createMap());
     return true;
   }
   public boolean addAllVertices(Collection vertices) {
@@ -78,10 +95,13 @@ public class MapDigraph implements Digraph, Serializable {
     if (destinations == null) {
       destinations = createMap();
       graph.put(origin, destinations);
+      if (reverseGraph != null) reverseGraph.put(origin, createMap());
     }
     addVertex(destination);
     Object oldArc = destinations.put(destination, arc);
     if (oldArc == null) size++;
+    if (reverseGraph != null)
+      ((Map)reverseGraph.get(destination)).put(origin, arc);
     return oldArc;
   }
   public Object getArc(Object origin, Object destination) {
@@ -93,7 +113,14 @@ public class MapDigraph implements Digraph, Serializable {
     Map dst = (Map)graph.remove(vertex);
     if (dst != null) size -= dst.size();
     else return false;
+    if (reverseGraph != null) {
+      for (Iterator i = dst.keySet().iterator(); i.hasNext();) {
+        Map origins = (Map)reverseGraph.get(i.next());
+        if (origins != null) origins.remove(vertex);
+      }
+    }
     removeIncoming(vertex);
+    if (reverseGraph != null) reverseGraph.remove(vertex);
     return true;
   }
   public boolean removeAllVertices(Collection vertices) {
@@ -107,10 +134,27 @@ public class MapDigraph implements Digraph, Serializable {
     if (destinations == null) return null;
     Object arc = destinations.remove(destination);
     if (arc != null) size--;
+    if (reverseGraph != null) {
+      Map origins = (Map)reverseGraph.get(destination);
+      if (origins != null) origins.remove(origin);
+    }
     return arc;
   }
   public boolean removeIncoming(Object vertex) {
     boolean modified = false;
+    if (reverseGraph != null) {
+      Map origins = (Map)reverseGraph.get(vertex);
+      if (origins == null) return false;
+      for (Iterator i = origins.keySet().iterator(); i.hasNext();) {
+        Map destinations = (Map)graph.get(i.next());
+        if (destinations == null) continue;
+        Object arc = destinations.remove(vertex);
+        if (arc != null) size--;
+        modified |= (arc != null);
+      }
+      origins.clear();
+      return modified;
+    }
     for (Iterator i = graph.values().iterator(); i.hasNext();) {
       Map destinations = (Map)i.next();
       Object arc = destinations.remove(vertex);
@@ -120,9 +164,13 @@ public class MapDigraph implements Digraph, Serializable {
     return modified;
   }
   public boolean removeOutgoing(Object vertex) {
-    Map destinations = (Map)graph.remove(vertex);
+    Map destinations = (Map)graph.get(vertex);
     if (destinations != null) size -= destinations.size();
     else return false;
+    if (reverseGraph != null) {
+      for (Iterator i = destinations.keySet().iterator(); i.hasNext();)
+        ((Map)reverseGraph.get(i.next())).remove(vertex);
+    }
     boolean modified = !destinations.isEmpty();
     destinations.clear();
     return modified;
@@ -214,8 +262,35 @@ public class MapDigraph implements Digraph, Serializable {
   }
   public ArcIterator incomingIterator(Object vertex) {
     if (!containsVertex(vertex)) return ArcIterator.EMPTY_ITERATOR;
+    if (reverseGraph != null) return new IndexedIncomingArcIterator(vertex);
     return new IncomingArcIterator(vertex);
   }
+  private class IndexedIncomingArcIterator implements ArcIterator {
+    private Object dst;
+    private Iterator originIt;
+    private Map.Entry entry;
+    private IndexedIncomingArcIterator(Object vertex) {
+      dst = vertex;
+      originIt = ((Map)reverseGraph.get(vertex)).entrySet().iterator();
+    }
+    public Object getOrigin() {
+      if (entry == null) return null;
+      return entry.getKey();
+    }
+    public Object getDestination() {
+      return dst;
+    }
+    public boolean hasNext() {
+      return originIt.hasNext();
+    }
+    public Object next() {
+      entry = (Map.Entry)originIt.next();
+      return entry.getValue();
+    }
+    public void remove() {
+      throw new java.lang.UnsupportedOperationException("Method remove() not yet implemented.");
+    }
+  }
   private class IncomingArcIterator implements ArcIterator {
     private Object dst;
     private Object origin, nextOrigin;
@@ -268,6 +343,10 @@ public class MapDigraph implements Digraph, Serializable {
     else return destinations.size();
   }
   public int incomingSize(Object vertex) {
+    if (reverseGraph != null) {
+      Map origins = (Map)reverseGraph.get(vertex);
+      return (origins == null ? 0 : origins.size());
+    }
     int count = 0;
     if (!graph.containsKey(vertex)) return 0;
     for (Iterator i = graph.values().iterator(); i.hasNext();) {
@@ -297,10 +376,42 @@ public class MapDigraph implements Digraph, Serializable {
     return incomingSize(vertex) == 0;
   }
 
+  /**
+   * Replaces the contents of this digraph with rows in the layout of
+   * CsrDigraph.fromRows(), creating each adjacency map once at its final
+   * size when hash maps are used. Rows must not contain duplicate targets.
+   */
+  void load(Object[] vertices, int[] outOffsets, int[] outTargets, Object[] arcs) {
+    int order = vertices.length;
+    graph = createMap(order);
+    if (reverseGraph != null) {
+      reverseGraph = createMap(order);
+      int[] inDegrees = new int[order];
+      for (int k = 0; k < outOffsets[order]; k++) inDegrees[outTargets[k]]++;
+      for (int v = 0; v < order; v++) reverseGraph.put(vertices[v], createMap(inDegrees[v]));
+    }
+    for (int v = 0; v < order; v++) {
+      Map destinations = createMap(outOffsets[v + 1] - outOffsets[v]);
+      for (int k = outOffsets[v]; k < outOffsets[v + 1]; k++) {
+        Object destination = vertices[outTargets[k]];
+        destinations.put(destination, arcs[k]);
+        if (reverseGraph != null)
+          ((Map)reverseGraph.get(destination)).put(vertices[v], arcs[k]);
+      }
+      graph.put(vertices[v], destinations);
+    }
+    size = outOffsets[order];
+  }
+
   private Map createMap() {
     return (Map)mapFactory.create();
   }
 
+  private Map createMap(int expectedSize) {
+    if (mapFactory.getClass() != HashMapFactory.class) return createMap();
+    return new HashMap((int)(expectedSize / 0.75f) + 1);
+  }
+
   public static class HashMapFactory implements Factory, Serializable {
     public Object create() {
       return new HashMap();
@@ -0,0 +1,485 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+import java.io.Serializable;
+import org.objectstyle.ashwood.util.BitUtils;
+
+/**
+ * Adjacency matrix Digraph for dense graphs. Vertices get dense int ids
+ * through a VertexIndex; the arcs of each vertex are kept as a row of
+ * <code>long</code> words, together with the transposed column, so hasArc
+ * is a single bit test and degrees are computed with popcounts. Arc
+ * objects, including null, are kept in a side array that is allocated per
+ * row only once a non-null arc is stored in it.
+ * <p>
+ * Removing a vertex moves the vertex with the highest id into the freed id
+ * to keep ids dense. The rows returned by outgoingRow() and incomingRow()
+ * are the backing arrays and must not be modified; they are meant for
+ * word-parallel set operations such as those in BitUtils.
+ */
+public class MatrixDigraph implements Digraph, IntDigraph, Serializable {
+  private VertexIndex vertexIndex;
+  private long[][] rows;
+  private long[][] columns;
+  private Object[][] arcs;
+  private int capacity;
+  private int size;
+
+  public MatrixDigraph() {
+    this(64);
+  }
+
+  public MatrixDigraph(int expectedOrder) {
+    capacity = Math.max(expectedOrder, 64);
+    vertexIndex = new VertexIndex(capacity);
+    rows = new long[capacity][];
+    columns = new long[capacity][];
+    arcs = new Object[capacity][];
+  }
+
+  public VertexIndex getVertexIndex() {
+    return vertexIndex;
+  }
+
+  public int indexOf(Object vertex) {
+    return vertexIndex.indexOf(vertex);
+  }
+
+  public Object vertexAt(int index) {
+    return vertexIndex.vertexAt(index);
+  }
+
+  public int wordCount() {
+    return BitUtils.wordCount(capacity);
+  }
+
+  public long[] outgoingRow(int vertex) {
+    return rows[vertex];
+  }
+
+  public long[] incomingRow(int vertex) {
+    return columns[vertex];
+  }
+
+  public boolean addVertex(Object vertex) {
+    int order = vertexIndex.size();
+    return addIndex(vertex) == order;
+  }
+
+  public boolean addAllVertices(Collection vertices) {
+    int order = vertexIndex.size();
+    for (Iterator i = vertices.iterator(); i.hasNext();) addIndex(i.next());
+    return vertexIndex.size() > order;
+  }
+
+  public Object putArc(Object origin, Object destination, Object arc) {
+    int o = addIndex(origin);
+    int d = addIndex(destination);
+    return putArc(o, d, arc);
+  }
+
+  public Object putArc(int origin, int destination, Object arc) {
+    Object oldArc = arc(origin, destination);
+    if (BitUtils.add(rows[origin], destination)) {
+      BitUtils.set(columns[destination], origin);
+      size++;
+    }
+    if (arc != null) {
+      if (arcs[origin] == null) arcs[origin] = new Object[capacity];
+      arcs[origin][destination] = arc;
+    } else if (arcs[origin] != null) arcs[origin][destination] = null;
+    return oldArc;
+  }
+
+  public Object getArc(Object origin, Object destination) {
+    int o = vertexIndex.indexOf(origin);
+    int d = vertexIndex.indexOf(destination);
+    return (o >= 0 && d >= 0 ? arc(o, d) : null);
+  }
+
+  public Object arc(int origin, int destination) {
+    Object[] row = arcs[origin];
+    return (row != null ? row[destination] : null);
+  }
+
+  public boolean removeVertex(Object vertex) {
+    int v = vertexIndex.indexOf(vertex);
+    if (v < 0) return false;
+    removeOutgoing(v);
+    removeIncoming(v);
+    int last = vertexIndex.size() - 1;
+    if (v != last) move(last, v);
+    arcs[last] = null;
+    vertexIndex.remove(vertex);
+    return true;
+  }
+
+  public boolean removeAllVertices(Collection vertices) {
+    boolean modified = false;
+    for (Iterator i = vertices.iterator(); i.hasNext();)
+      modified |= removeVertex(i.next());
+    return modified;
+  }
+
+  public Object removeArc(Object origin, Object destination) {
+    int o = vertexIndex.indexOf(origin);
+    int d = vertexIndex.indexOf(destination);
+    if (o < 0 || d < 0) return null;
+    return removeArc(o, d);
+  }
+
+  public Object removeArc(int origin, int destination) {
+    Object oldArc = arc(origin, destination);
+    if (!BitUtils.get(rows[origin], destination)) return null;
+    BitUtils.clear(rows[origin], destination);
+    BitUtils.clear(columns[destination], origin);
+    if (arcs[origin] != null) arcs[origin][destination] = null;
+    size--;
+    return oldArc;
+  }
+
+  public boolean removeIncoming(Object vertex) {
+    int v = vertexIndex.indexOf(vertex);
+    return (v >= 0 && removeIncoming(v));
+  }
+
+  public boolean removeOutgoing(Object vertex) {
+    int v = vertexIndex.indexOf(vertex);
+    return (v >= 0 && removeOutgoing(v));
+  }
+
+  public boolean removeIncoming(int vertex) {
+    long[] column = columns[vertex];
+    boolean modified = false;
+    for (int o = BitUtils.nextSetBit(column, 0); o >= 0; o = BitUtils.nextSetBit(column, o + 1)) {
+      BitUtils.clear(rows[o], vertex);
+      if (arcs[o] != null) arcs[o][vertex] = null;
+      size--;
+      modified = true;
+    }
+    Arrays.fill(column, 0);
+    return modified;
+  }
+
+  public boolean removeOutgoing(int vertex) {
+    long[] row = rows[vertex];
+    boolean modified = false;
+    for (int d = BitUtils.nextSetBit(row, 0); d >= 0; d = BitUtils.nextSetBit(row, d + 1)) {
+      BitUtils.clear(columns[d], vertex);
+      size--;
+      modified = true;
+    }
+    Arrays.fill(row, 0);
+    arcs[vertex] = null;
+    return modified;
+  }
+
+  public Iterator vertexIterator() {
+    return vertexIndex.iterator();
+  }
+
+  public ArcIterator arcIterator() {
+    return new AllArcIterator();
+  }
+
+  public ArcIterator outgoingIterator(Object vertex) {
+    int v = vertexIndex.indexOf(vertex);
+    if (v < 0) return ArcIterator.EMPTY_ITERATOR;
+    return new AdjacentArcIterator(v, false);
+  }
+
+  public ArcIterator incomingIterator(Object vertex) {
+    int v = vertexIndex.indexOf(vertex);
+    if (v < 0) return ArcIterator.EMPTY_ITERATOR;
+    return new AdjacentArcIterator(v, true);
+  }
+
+  public int order() {
+    return vertexIndex.size();
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int outgoingSize(Object vertex) {
+    int v = vertexIndex.indexOf(vertex);
+    return (v >= 0 ? outDegree(v) : 0);
+  }
+
+  public int incomingSize(Object vertex) {
+    int v = vertexIndex.indexOf(vertex);
+    return (v >= 0 ? inDegree(v) : 0);
+  }
+
+  public int outDegree(int vertex) {
+    return BitUtils.cardinality(rows[vertex]);
+  }
+
+  public int inDegree(int vertex) {
+    return BitUtils.cardinality(columns[vertex]);
+  }
+
+  /**
+   * Selects the i-th set bit of the row, which takes a scan of its words;
+   * sequential walks over the arcs of a vertex should use nextTarget().
+   */
+  public int target(int vertex, int i) {
+    int target = BitUtils.select(rows[vertex], i);
+    if (target < 0) throw new IndexOutOfBoundsException("i=" + i + ", degree=" + outDegree(vertex));
+    return target;
+  }
+
+  /**
+   * Selects the i-th set bit of the column; see target().
+   */
+  public int source(int vertex, int i) {
+    int source = BitUtils.select(columns[vertex], i);
+    if (source < 0) throw new IndexOutOfBoundsException("i=" + i + ", degree=" + inDegree(vertex));
+    return source;
+  }
+
+  /**
+   * Returns the first destination of <code>vertex</code> at or after
+   * <code>from</code>, or -1.
+   */
+  public int nextTarget(int vertex, int from) {
+    return BitUtils.nextSetBit(rows[vertex], from);
+  }
+
+  /**
+   * Returns the first origin of an arc into <code>vertex</code> at or after
+   * <code>from</code>, or -1.
+   */
+  public int nextSource(int vertex, int from) {
+    return BitUtils.nextSetBit(columns[vertex], from);
+  }
+
+  public int commonSuccessorCount(int vertex1, int vertex2) {
+    return BitUtils.intersectionCount(rows[vertex1], rows[vertex2]);
+  }
+
+  public int commonPredecessorCount(int vertex1, int vertex2) {
+    return BitUtils.intersectionCount(columns[vertex1], columns[vertex2]);
+  }
+
+  public boolean containsVertex(Object vertex) {
+    return vertexIndex.contains(vertex);
+  }
+
+  public boolean containsAllVertices(Collection vertices) {
+    for (Iterator i = vertices.iterator(); i.hasNext();)
+      if (!vertexIndex.contains(i.next())) return false;
+    return true;
+  }
+
+  public boolean hasArc(Object origin, Object destination) {
+    int o = vertexIndex.indexOf(origin);
+    int d = vertexIndex.indexOf(destination);
+    return (o >= 0 && d >= 0 && BitUtils.get(rows[o], d));
+  }
+
+  public boolean hasArc(int origin, int destination) {
+    return BitUtils.get(rows[origin], destination);
+  }
+
+  public boolean isEmpty() {
+    return vertexIndex.size() == 0;
+  }
+
+  public boolean isOutgoingEmpty(Object vertex) {
+    int v = vertexIndex.indexOf(vertex);
+    return (v < 0 || BitUtils.nextSetBit(rows[v], 0) < 0);
+  }
+
+  public boolean isIncomingEmpty(Object vertex) {
+    int v = vertexIndex.indexOf(vertex);
+    return (v < 0 || BitUtils.nextSetBit(columns[v], 0) < 0);
+  }
+
+  private int addIndex(Object vertex) {
+    int order = vertexIndex.size();
+    int v = vertexIndex.add(vertex);
+    if (v == order) {
+      if (v == capacity) grow();
+      rows[v] = new long[BitUtils.wordCount(capacity)];
+      columns[v] = new long[BitUtils.wordCount(capacity)];
+    }
+    return v;
+  }
+
+  private void grow() {
+    int order = vertexIndex.size() - 1;
+    int newCapacity = capacity * 2;
+    int words = BitUtils.wordCount(newCapacity);
+    long[][] newRows = new long[newCapacity][];
+    long[][] newColumns = new long[newCapacity][];
+    Object[][] newArcs = new Object[newCapacity][];
+    for (int i = 0; i < order; i++) {
+      newRows[i] = copyOf(rows[i], words);
+      newColumns[i] = copyOf(columns[i], words);
+      if (arcs[i] != null) {
+        newArcs[i] = new Object[newCapacity];
+        System.arraycopy(arcs[i], 0, newArcs[i], 0, capacity);
+      }
+    }
+    rows = newRows;
+    columns = newColumns;
+    arcs = newArcs;
+    capacity = newCapacity;
+  }
+
+  private static long[] copyOf(long[] words, int length) {
+    long[] copy = new long[length];
+    System.arraycopy(words, 0, copy, 0, words.length);
+    return copy;
+  }
+
+  //renumbers vertex 'from' to the cleared id 'to', moving its row, column and arcs
+  private void move(int from, int to) {
+    Object selfArc = null;
+    boolean selfLoop = BitUtils.get(rows[from], from);
+    if (selfLoop) selfArc = removeArc(from, from);
+    long[] row = rows[from];
+    long[] column = columns[from];
+    for (int d = BitUtils.nextSetBit(row, 0); d >= 0; d = BitUtils.nextSetBit(row, d + 1)) {
+      BitUtils.clear(columns[d], from);
+      BitUtils.set(columns[d], to);
+    }
+    for (int o = BitUtils.nextSetBit(column, 0); o >= 0; o = BitUtils.nextSetBit(column, o + 1)) {
+      BitUtils.clear(rows[o], from);
+      BitUtils.set(rows[o], to);
+      if (arcs[o] != null) {
+        arcs[o][to] = arcs[o][from];
+        arcs[o][from] = null;
+      }
+    }
+    long[] emptyRow = rows[to];
+    long[] emptyColumn = columns[to];
+    rows[to] = row;
+    columns[to] = column;
+    arcs[to] = arcs[from];
+    rows[from] = emptyRow;
+    columns[from] = emptyColumn;
+    arcs[from] = null;
+    if (selfLoop) putArc(to, to, selfArc);
+  }
+
+  private class AdjacentArcIterator implements ArcIterator {
+    private int vertex;
+    private boolean incoming;
+    private int current = -1;
+    private int next;
+
+    private AdjacentArcIterator(int vertex, boolean incoming) {
+      this.vertex = vertex;
+      this.incoming = incoming;
+      next = BitUtils.nextSetBit(bits(), 0);
+    }
+    private long[] bits() {
+      return (incoming ? columns[vertex] : rows[vertex]);
+    }
+    public Object getOrigin() {
+      return vertexIndex.vertexAt(incoming ? current : vertex);
+    }
+    public Object getDestination() {
+      return vertexIndex.vertexAt(incoming ? vertex : current);
+    }
+    public boolean hasNext() {
+      return next >= 0;
+    }
+    public Object next() {
+      if (next < 0) throw new NoSuchElementException();
+      current = next;
+      next = BitUtils.nextSetBit(bits(), current + 1);
+      return (incoming ? arc(current, vertex) : arc(vertex, current));
+    }
+    public void remove() {
+      if (current < 0) throw new IllegalStateException();
+      if (incoming) removeArc(current, vertex);
+      else removeArc(vertex, current);
+    }
+  }
+
+  private class AllArcIterator implements ArcIterator {
+    private int origin, destination = -1;
+    private int nextOrigin, nextDestination = -1;
+
+    private AllArcIterator() {
+      advance(0, 0);
+    }
+    private void advance(int o, int from) {
+      for (; o < vertexIndex.size(); o++, from = 0) {
+        int d = BitUtils.nextSetBit(rows[o], from);
+        if (d >= 0) {
+          nextOrigin = o;
+          nextDestination = d;
+          return;
+        }
+      }
+      nextDestination = -1;
+    }
+    public Object getOrigin() {
+      return vertexIndex.vertexAt(origin);
+    }
+    public Object getDestination() {
+      return vertexIndex.vertexAt(destination);
+    }
+    public boolean hasNext() {
+      return nextDestination >= 0;
+    }
+    public Object next() {
+      if (nextDestination < 0) throw new NoSuchElementException();
+      origin = nextOrigin;
+      destination = nextDestination;
+      advance(origin, destination + 1);
+      return arc(origin, destination);
+    }
+    public void remove() {
+      if (destination < 0) throw new IllegalStateException();
+      removeArc(origin, destination);
+    }
+  }
+}
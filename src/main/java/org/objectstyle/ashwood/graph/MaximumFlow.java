@@ -0,0 +1,394 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+import org.objectstyle.ashwood.function.DoubleFunction;
+
+/**
+ * Maximum s-t flow and minimum cut by highest-label push-relabel. The
+ * digraph is copied into a residual graph of flat arrays: every arc gets a
+ * forward residual arc in its origin's row and a paired reverse arc in its
+ * destination's row, capacities coming from the arc objects through a
+ * DoubleFunction. Two heuristics keep the labels tight: a global relabel,
+ * a backward breadth first search from the sink, runs at the start and
+ * whenever relabeling work since the last one exceeds a multiple of the
+ * graph size, and a gap, a label left without vertices, lifts every vertex
+ * above it to the source side at once.
+ * <p>
+ * Only the first phase of the algorithm runs: it yields the flow value and
+ * the minimum cut, the arcs from vertices that cannot reach the sink in the
+ * residual graph to vertices that can, but not a flow decomposition.
+ * Capacities must be non-negative; infinite ones are allowed and make the
+ * flow value infinite if every cut crosses one of them.
+ */
+public class MaximumFlow {
+  private static final int GLOBAL_RELABEL_FACTOR = 6;
+  private static final int RELABEL_COST = 12;
+
+  private CsrDigraph digraph;
+  private int source;
+  private int sink;
+  private double finiteTotal;
+
+  //residual graph: row of vertex v is offsets[v]..offsets[v+1]-1
+  private int[] offsets;
+  private int[] heads;
+  private int[] pairs;
+  private double[] residuals;
+  //position of the original arc for forward residual arcs, -1 for reverse ones
+  private int[] arcPositions;
+
+  private int[] labels;
+  private double[] excesses;
+  private int[] currentArcs;
+  private int[] activeFirst;
+  private int[] activeNext;
+  private int maxActive;
+  private int[] labelFirst;
+  private int[] labelNext;
+  private int[] labelPrevious;
+  private int maxLabel;
+  private int[] queue;
+  private long work;
+
+  private double flowValue = -1;
+  private boolean[] sinkSide;
+  private int[] cutPositions;
+  private int[] cutOrigins;
+
+  /**
+   * @throws IllegalArgumentException if the source or the sink is not in
+   * the digraph, they are the same vertex, or a capacity is negative
+   */
+  public MaximumFlow(DigraphIteration digraph, DoubleFunction capacities, Object source, Object sink) {
+    this.digraph = CsrDigraph.copyOf(digraph);
+    this.source = this.digraph.indexOf(source);
+    this.sink = this.digraph.indexOf(sink);
+    if (this.source < 0) throw new IllegalArgumentException("Source " + source + " is not in the digraph.");
+    if (this.sink < 0) throw new IllegalArgumentException("Sink " + sink + " is not in the digraph.");
+    if (this.source == this.sink) throw new IllegalArgumentException("Source and sink are the same vertex.");
+    buildResidualGraph(capacities);
+  }
+
+  /**
+   * Returns the value of a maximum flow, which equals the capacity of the
+   * minimum cut.
+   */
+  public double getFlowValue() {
+    run();
+    return flowValue;
+  }
+
+  public boolean isOnSourceSide(Object vertex) {
+    run();
+    int v = digraph.indexOf(vertex);
+    return v >= 0 && !sinkSide[v];
+  }
+
+  /**
+   * Returns the vertices that cannot reach the sink once the maximum flow
+   * is sent, the source among them.
+   */
+  public Set getSourceSide() {
+    run();
+    Set result = new HashSet();
+    for (int v = 0; v < sinkSide.length; v++)
+      if (!sinkSide[v]) result.add(digraph.vertexAt(v));
+    return result;
+  }
+
+  public int getCutSize() {
+    run();
+    return cutPositions.length;
+  }
+
+  /**
+   * Iterates over the arcs of the minimum cut.
+   */
+  public ArcIterator cutIterator() {
+    run();
+    return new CutIterator();
+  }
+
+  private void buildResidualGraph(DoubleFunction capacities) {
+    int order = digraph.order();
+    int size = digraph.size();
+    offsets = new int[order + 1];
+    for (int v = 0; v < order; v++) offsets[v + 1] = offsets[v] + digraph.outDegree(v) + digraph.inDegree(v);
+    heads = new int[2 * size];
+    pairs = new int[2 * size];
+    residuals = new double[2 * size];
+    arcPositions = new int[2 * size];
+    double[] capacityValues = new double[size];
+    for (int p = 0; p < size; p++) {
+      double capacity = capacities.doubleValue(digraph.arcAt(p));
+      if (!(capacity >= 0))
+        throw new IllegalArgumentException("Invalid arc capacity " + capacity + " at " + p);
+      capacityValues[p] = capacity;
+      if (capacity != Double.POSITIVE_INFINITY) finiteTotal += capacity;
+    }
+    //an infinite capacity becomes one no finite cut can reach
+    double bound = finiteTotal + 1;
+    int[] fill = new int[order];
+    System.arraycopy(offsets, 0, fill, 0, order);
+    for (int u = 0; u < order; u++) {
+      for (int p = digraph.outStart(u), end = digraph.outEnd(u); p < end; p++) {
+        int v = digraph.arcTarget(p);
+        int forward = fill[u]++;
+        int reverse = fill[v]++;
+        heads[forward] = v;
+        heads[reverse] = u;
+        pairs[forward] = reverse;
+        pairs[reverse] = forward;
+        residuals[forward] = Math.min(capacityValues[p], bound);
+        arcPositions[forward] = p;
+        arcPositions[reverse] = -1;
+      }
+    }
+  }
+
+  private synchronized void run() {
+    if (flowValue >= 0) return;
+    int order = digraph.order();
+    labels = new int[order];
+    excesses = new double[order];
+    currentArcs = new int[order];
+    activeFirst = new int[order + 1];
+    activeNext = new int[order];
+    labelFirst = new int[order + 1];
+    labelNext = new int[order];
+    labelPrevious = new int[order];
+    queue = new int[order];
+    for (int a = offsets[source]; a < offsets[source + 1]; a++) {
+      double delta = residuals[a];
+      if (delta > 0) {
+        residuals[a] = 0;
+        residuals[pairs[a]] += delta;
+        excesses[heads[a]] += delta;
+        excesses[source] -= delta;
+      }
+    }
+    globalRelabel();
+    long threshold = (long)GLOBAL_RELABEL_FACTOR * order + residuals.length;
+    int v;
+    while ((v = nextActive()) >= 0) {
+      discharge(v);
+      if (work > threshold) globalRelabel();
+    }
+    double value = excesses[sink];
+    flowValue = (value > finiteTotal ? Double.POSITIVE_INFINITY : value);
+    collectCut();
+    labels = currentArcs = activeFirst = activeNext = null;
+    labelFirst = labelNext = labelPrevious = queue = null;
+    excesses = null;
+  }
+
+  private void discharge(int v) {
+    int label = labels[v];
+    while (true) {
+      int end = offsets[v + 1];
+      int a = currentArcs[v];
+      for (; a < end; a++) {
+        if (residuals[a] > 0 && labels[heads[a]] == label - 1) {
+          push(v, a);
+          if (excesses[v] == 0) {
+            currentArcs[v] = a;
+            return;
+          }
+        }
+      }
+      //relabel
+      work += RELABEL_COST + end - offsets[v];
+      removeLabeled(v);
+      if (labelFirst[label] < 0) {
+        gap(label);
+        labels[v] = labels.length;
+        return;
+      }
+      int newLabel = labels.length;
+      for (a = offsets[v]; a < end; a++) {
+        if (residuals[a] > 0 && labels[heads[a]] + 1 < newLabel) newLabel = labels[heads[a]] + 1;
+      }
+      labels[v] = label = newLabel;
+      currentArcs[v] = offsets[v];
+      if (label >= labels.length) return;
+      addLabeled(v);
+    }
+  }
+
+  private void push(int v, int a) {
+    int w = heads[a];
+    double delta = Math.min(excesses[v], residuals[a]);
+    residuals[a] -= delta;
+    residuals[pairs[a]] += delta;
+    excesses[v] -= delta;
+    if (w != sink && excesses[w] == 0) activate(w);
+    excesses[w] += delta;
+  }
+
+  //no vertex has the label any more, so the ones above cannot reach the sink
+  private void gap(int label) {
+    int order = labels.length;
+    for (int l = label + 1; l <= maxLabel; l++) {
+      for (int u = labelFirst[l]; u >= 0; u = labelNext[u]) labels[u] = order;
+      labelFirst[l] = -1;
+      activeFirst[l] = -1;
+    }
+    maxLabel = label - 1;
+  }
+
+  //exact distances to the sink by a backward breadth first search
+  private void globalRelabel() {
+    int order = labels.length;
+    Arrays.fill(labels, order);
+    Arrays.fill(labelFirst, -1);
+    Arrays.fill(activeFirst, -1);
+    maxLabel = maxActive = 0;
+    labels[sink] = 0;
+    int head = 0, tail = 0;
+    queue[tail++] = sink;
+    while (head < tail) {
+      int w = queue[head++];
+      currentArcs[w] = offsets[w];
+      addLabeled(w);
+      if (w != sink && excesses[w] > 0) activate(w);
+      for (int a = offsets[w], end = offsets[w + 1]; a < end; a++) {
+        int u = heads[a];
+        if (labels[u] == order && u != source && residuals[pairs[a]] > 0) {
+          labels[u] = labels[w] + 1;
+          queue[tail++] = u;
+        }
+      }
+    }
+    work = 0;
+  }
+
+  private int nextActive() {
+    while (maxActive >= 0 && activeFirst[maxActive] < 0) maxActive--;
+    if (maxActive < 0) return -1;
+    int v = activeFirst[maxActive];
+    activeFirst[maxActive] = activeNext[v];
+    return v;
+  }
+
+  private void activate(int v) {
+    int label = labels[v];
+    if (label >= labels.length) return;
+    activeNext[v] = activeFirst[label];
+    activeFirst[label] = v;
+    if (label > maxActive) maxActive = label;
+  }
+
+  private void addLabeled(int v) {
+    int label = labels[v];
+    int first = labelFirst[label];
+    labelNext[v] = first;
+    labelPrevious[v] = -1;
+    if (first >= 0) labelPrevious[first] = v;
+    labelFirst[label] = v;
+    if (label > maxLabel) maxLabel = label;
+  }
+
+  private void removeLabeled(int v) {
+    int next = labelNext[v];
+    int previous = labelPrevious[v];
+    if (previous >= 0) labelNext[previous] = next;
+    else labelFirst[labels[v]] = next;
+    if (next >= 0) labelPrevious[next] = previous;
+  }
+
+  private void collectCut() {
+    int order = digraph.order();
+    sinkSide = new boolean[order];
+    int head = 0, tail = 0;
+    sinkSide[sink] = true;
+    queue[tail++] = sink;
+    while (head < tail) {
+      int w = queue[head++];
+      for (int a = offsets[w], end = offsets[w + 1]; a < end; a++) {
+        int u = heads[a];
+        if (!sinkSide[u] && residuals[pairs[a]] > 0) {
+          sinkSide[u] = true;
+          queue[tail++] = u;
+        }
+      }
+    }
+    int count = 0;
+    for (int a = 0; a < arcPositions.length; a++)
+      if (arcPositions[a] >= 0 && sinkSide[heads[a]] && !sinkSide[heads[pairs[a]]]) count++;
+    cutPositions = new int[count];
+    cutOrigins = new int[count];
+    count = 0;
+    for (int u = 0; u < order; u++) {
+      if (sinkSide[u]) continue;
+      for (int a = offsets[u], end = offsets[u + 1]; a < end; a++) {
+        if (arcPositions[a] >= 0 && sinkSide[heads[a]]) {
+          cutPositions[count] = arcPositions[a];
+          cutOrigins[count++] = u;
+        }
+      }
+    }
+  }
+
+  private class CutIterator implements ArcIterator {
+    private int index = -1;
+
+    public Object getOrigin() {
+      return (index >= 0 ? digraph.vertexAt(cutOrigins[index]) : null);
+    }
+    public Object getDestination() {
+      return (index >= 0 ? digraph.vertexAt(digraph.arcTarget(cutPositions[index])) : null);
+    }
+    public boolean hasNext() {
+      return index + 1 < cutPositions.length;
+    }
+    public Object next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      return digraph.arcAt(cutPositions[++index]);
+    }
+    public void remove() {
+      throw new UnsupportedOperationException("Method remove() not supported.");
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.Arrays;
+
+/**
+ * Breadth first searches from many sources over an IntDigraph at once
+ * (MS-BFS). Source <code>i</code> owns bit <code>i &amp; 63</code> of lane
+ * word <code>i &gt;&gt;&gt; 6</code>, and every vertex carries that many
+ * words of "seen" and "visit" bits. A level scans the adjacency of each
+ * vertex visited by any search only once and moves all its searches to the
+ * successors with a few word operations, so the memory traffic is shared
+ * by up to 64 searches per lane word.
+ */
+public class MultiSourceBreadthFirstSearch {
+  private IntDigraph digraph;
+  private int levelCount;
+
+  public MultiSourceBreadthFirstSearch(IntDigraph digraph) {
+    this.digraph = digraph;
+  }
+
+  /**
+   * Runs one search per source and returns the distances, indexed by source
+   * position and then by vertex, -1 for vertices a source does not reach.
+   */
+  public int[][] traverse(int[] sources) {
+    int order = digraph.order();
+    int lanes = (sources.length + 63) >>> 6;
+    long[] seen = new long[order * lanes];
+    long[] visit = new long[order * lanes];
+    long[] visitNext = new long[order * lanes];
+    int[][] distances = new int[sources.length][order];
+    for (int i = 0; i < sources.length; i++) {
+      Arrays.fill(distances[i], -1);
+      int s = sources[i];
+      distances[i][s] = 0;
+      seen[s * lanes + (i >>> 6)] |= 1L << i;
+      visit[s * lanes + (i >>> 6)] |= 1L << i;
+    }
+    levelCount = (sources.length > 0 ? 1 : 0);
+    boolean active = sources.length > 0;
+    ArcCursor outgoing = new ArcCursor(digraph);
+    while (active) {
+      active = false;
+      for (int v = 0; v < order; v++) {
+        int base = v * lanes;
+        boolean visited = false;
+        for (int j = 0; j < lanes; j++) {
+          if (visit[base + j] != 0) {
+            visited = true;
+            break;
+          }
+        }
+        if (!visited) continue;
+        for (outgoing.reset(v); outgoing.hasNext();) {
+          int nbase = outgoing.next() * lanes;
+          for (int j = 0; j < lanes; j++) {
+            long d = visit[base + j] & ~seen[nbase + j];
+            if (d == 0) continue;
+            visitNext[nbase + j] |= d;
+            seen[nbase + j] |= d;
+            active = true;
+          }
+        }
+      }
+      if (!active) break;
+      for (int v = 0; v < order; v++) {
+        int base = v * lanes;
+        for (int j = 0; j < lanes; j++) {
+          for (long d = visitNext[base + j]; d != 0; d &= d - 1)
+            distances[(j << 6) + Long.numberOfTrailingZeros(d)][v] = levelCount;
+        }
+      }
+      long[] tmp = visit;
+      visit = visitNext;
+      visitNext = tmp;
+      Arrays.fill(visitNext, 0L);
+      levelCount++;
+    }
+    return distances;
+  }
+
+  /**
+   * Returns the number of levels of the deepest search of the last
+   * traversal, the sources included.
+   */
+  public int getLevelCount() {
+    return levelCount;
+  }
+}
@@ -0,0 +1,264 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Direction-optimizing breadth first search over an IntDigraph. Frontiers
+ * and the visited set are bitsets and every level is expanded on a
+ * fork/join pool, split by ranges of bitset words. While the frontier is
+ * small a level is expanded top-down: frontier vertices claim unvisited
+ * successors with a compare-and-set on the visited word. Once the arcs
+ * leaving the frontier outnumber the arcs left to explore divided by
+ * <code>alpha</code>, levels are expanded bottom-up: every unvisited vertex
+ * looks for a predecessor in the frontier and stops at the first one, and
+ * each task owns the words of its range so no atomic update is needed. The
+ * search returns to top-down once the frontier holds fewer than
+ * <code>order / beta</code> vertices.
+ * <p>
+ * Distances and parents come back in primitive arrays owned by the search;
+ * both are -1 for unreached vertices and a root is its own parent.
+ */
+public class ParallelBreadthFirstSearch {
+  public static final int DEFAULT_ALPHA = 14;
+  public static final int DEFAULT_BETA = 24;
+  public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 64;
+
+  private IntDigraph digraph;
+  private ForkJoinPool pool;
+  private int alpha = DEFAULT_ALPHA;
+  private int beta = DEFAULT_BETA;
+  private int sequentialThreshold = DEFAULT_SEQUENTIAL_THRESHOLD;
+
+  private int[] distances;
+  private int[] parents;
+  private AtomicLongArray visited;
+  private AtomicLongArray frontier;
+  private AtomicLongArray next;
+  private int levelCount;
+
+  public ParallelBreadthFirstSearch(IntDigraph digraph) {
+    this(digraph, ForkJoinPool.commonPool());
+  }
+
+  public ParallelBreadthFirstSearch(IntDigraph digraph, ForkJoinPool pool) {
+    this.digraph = digraph;
+    this.pool = pool;
+    int order = digraph.order();
+    int words = (order + 63) >>> 6;
+    distances = new int[order];
+    parents = new int[order];
+    visited = new AtomicLongArray(words);
+    frontier = new AtomicLongArray(words);
+    next = new AtomicLongArray(words);
+  }
+
+  public void setDirectionParameters(int alpha, int beta) {
+    this.alpha = Math.max(1, alpha);
+    this.beta = Math.max(1, beta);
+  }
+
+  /**
+   * Sets the number of bitset words (64 vertices each) up to which a range
+   * is processed by a single task.
+   */
+  public void setSequentialThreshold(int sequentialThreshold) {
+    this.sequentialThreshold = Math.max(1, sequentialThreshold);
+  }
+
+  public int[] traverse(int root) {
+    return traverse(new int[] {root});
+  }
+
+  /**
+   * Runs the search from the roots and returns the distance array, which is
+   * overwritten by the next traversal.
+   */
+  public int[] traverse(int[] roots) {
+    int order = digraph.order();
+    int words = visited.length();
+    Arrays.fill(distances, -1);
+    Arrays.fill(parents, -1);
+    for (int i = 0; i < words; i++) {
+      visited.set(i, 0L);
+      frontier.set(i, 0L);
+    }
+    //bits past the last vertex count as visited so bottom-up steps skip them
+    if ((order & 63) != 0) visited.set(words - 1, -1L << order);
+    long unexploredArcs = digraph.size();
+    long frontierArcs = 0;
+    int frontierCount = 0;
+    for (int i = 0; i < roots.length; i++) {
+      int root = roots[i];
+      if (distances[root] >= 0) continue;
+      distances[root] = 0;
+      parents[root] = root;
+      visited.set(root >>> 6, visited.get(root >>> 6) | (1L << root));
+      frontier.set(root >>> 6, frontier.get(root >>> 6) | (1L << root));
+      frontierCount++;
+      frontierArcs += digraph.outDegree(root);
+    }
+    unexploredArcs -= frontierArcs;
+    levelCount = 0;
+    boolean bottomUp = false;
+    while (frontierCount > 0) {
+      levelCount++;
+      if (!bottomUp && frontierArcs > unexploredArcs / alpha) bottomUp = true;
+      else if (bottomUp && frontierCount < order / beta) bottomUp = false;
+      for (int i = 0; i < words; i++) next.set(i, 0L);
+      StepTask step = new StepTask(bottomUp, levelCount, 0, words);
+      if (words <= sequentialThreshold) step.compute();
+      else pool.invoke(step);
+      AtomicLongArray tmp = frontier;
+      frontier = next;
+      next = tmp;
+      frontierCount = step.count;
+      frontierArcs = step.arcs;
+      unexploredArcs -= frontierArcs;
+    }
+    return distances;
+  }
+
+  public int[] getDistances() {
+    return distances;
+  }
+
+  public int[] getParents() {
+    return parents;
+  }
+
+  /**
+   * Returns the number of levels of the last traversal, the roots included.
+   */
+  public int getLevelCount() {
+    return levelCount;
+  }
+
+  //sets the bit and returns true if this call changed it from clear to set
+  private static boolean claim(AtomicLongArray bits, int index) {
+    int word = index >>> 6;
+    long mask = 1L << index;
+    while (true) {
+      long old = bits.get(word);
+      if ((old & mask) != 0) return false;
+      if (bits.compareAndSet(word, old, old | mask)) return true;
+    }
+  }
+
+  private class StepTask extends RecursiveAction {
+    private boolean bottomUp;
+    private int level;
+    private int fromWord, toWord;
+    //vertices added to the next frontier and their outgoing arcs
+    int count;
+    long arcs;
+
+    StepTask(boolean bottomUp, int level, int fromWord, int toWord) {
+      this.bottomUp = bottomUp;
+      this.level = level;
+      this.fromWord = fromWord;
+      this.toWord = toWord;
+    }
+
+    protected void compute() {
+      if (toWord - fromWord > sequentialThreshold) {
+        int middle = (fromWord + toWord) >>> 1;
+        StepTask left = new StepTask(bottomUp, level, fromWord, middle);
+        StepTask right = new StepTask(bottomUp, level, middle, toWord);
+        invokeAll(left, right);
+        count = left.count + right.count;
+        arcs = left.arcs + right.arcs;
+      } else if (bottomUp) bottomUp();
+      else topDown();
+    }
+
+    private void topDown() {
+      ArcCursor outgoing = new ArcCursor(digraph);
+      for (int word = fromWord; word < toWord; word++) {
+        for (long w = frontier.get(word); w != 0; w &= w - 1) {
+          int v = (word << 6) + Long.numberOfTrailingZeros(w);
+          for (outgoing.reset(v); outgoing.hasNext();) {
+            int dst = outgoing.next();
+            if (claim(visited, dst)) {
+              distances[dst] = level;
+              parents[dst] = v;
+              claim(next, dst);
+              count++;
+              arcs += digraph.outDegree(dst);
+            }
+          }
+        }
+      }
+    }
+
+    private void bottomUp() {
+      ArcCursor incoming = new ArcCursor(digraph, true);
+      for (int word = fromWord; word < toWord; word++) {
+        long seen = visited.get(word);
+        long found = 0;
+        for (long w = ~seen; w != 0; w &= w - 1) {
+          int v = (word << 6) + Long.numberOfTrailingZeros(w);
+          for (incoming.reset(v); incoming.hasNext();) {
+            int src = incoming.next();
+            if ((frontier.get(src >>> 6) & (1L << src)) != 0) {
+              distances[v] = level;
+              parents[v] = src;
+              found |= 1L << v;
+              count++;
+              arcs += digraph.outDegree(v);
+              break;
+            }
+          }
+        }
+        if (found != 0) {
+          visited.set(word, seen | found);
+          next.set(word, found);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,434 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Strongly connected components of an IntDigraph computed on a fork/join
+ * pool with the forward-backward (coloring) method. Every task owns the
+ * vertices of one color: it first trims vertices without incoming or
+ * outgoing arcs inside the color, then takes a pivot and marks its forward
+ * and backward closures. Their intersection is a component, the forward
+ * and backward remainders are forked as independent tasks, and the task
+ * goes on with the next pivot among its own remaining vertices, so many
+ * small cycles cost neither stack depth nor repeated copying. Once few
+ * enough vertices remain, a task finishes with a sequential Tarjan pass
+ * restricted to its color.
+ * <p>
+ * Tasks only ever write the entries of their own vertices; a neighbour in
+ * another task may be recolored concurrently, but never to a color this
+ * task owns, so the racy reads cannot change the outcome.
+ */
+public class ParallelStrongConnection {
+  public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 4096;
+
+  private static final int DONE = -1;
+  private static final int TRIMMED = -2;
+
+  private IntDigraph digraph;
+  private ForkJoinPool pool;
+  private int sequentialThreshold = DEFAULT_SEQUENTIAL_THRESHOLD;
+
+  private int[] colors;
+  private int[] componentIds;
+  private int[] inDegrees;
+  private int[] outDegrees;
+  private int[] preOrder;
+  private int[] lowLink;
+  private AtomicInteger colorCounter;
+  private AtomicInteger componentCounter;
+  private boolean done;
+
+  public ParallelStrongConnection(IntDigraph digraph) {
+    this(digraph, ForkJoinPool.commonPool());
+  }
+
+  public ParallelStrongConnection(IntDigraph digraph, ForkJoinPool pool) {
+    this.digraph = digraph;
+    this.pool = pool;
+  }
+
+  public void setSequentialThreshold(int sequentialThreshold) {
+    this.sequentialThreshold = Math.max(1, sequentialThreshold);
+  }
+
+  /**
+   * Runs the decomposition (once) and returns the component id of every
+   * vertex; ids are 0..getComponentCount()-1 in no particular order.
+   */
+  public int[] getComponentIds() {
+    run();
+    return componentIds;
+  }
+
+  public int getComponentCount() {
+    run();
+    return componentCounter.get();
+  }
+
+  /**
+   * Returns the members of every component, indexed by component id.
+   */
+  public int[][] getComponents() {
+    run();
+    int count = componentCounter.get();
+    int[] sizes = new int[count];
+    for (int v = 0; v < componentIds.length; v++) sizes[componentIds[v]]++;
+    int[][] components = new int[count][];
+    for (int c = 0; c < count; c++) components[c] = new int[sizes[c]];
+    Arrays.fill(sizes, 0);
+    for (int v = 0; v < componentIds.length; v++) {
+      int c = componentIds[v];
+      components[c][sizes[c]++] = v;
+    }
+    return components;
+  }
+
+  /**
+   * Builds the condensation: vertex <code>c</code> of the result is the
+   * Integer component id <code>c</code>, and every arc carries the Integer
+   * number of original arcs it replaces. Component rows are collected in
+   * parallel.
+   */
+  public CsrDigraph contract() {
+    final int[][] components = getComponents();
+    final int count = components.length;
+    final int[][] rowTargets = new int[count][];
+    final int[][] rowCounts = new int[count][];
+    pool.invoke(new ContractTask(components, rowTargets, rowCounts, 0, count));
+    int[] offsets = new int[count + 1];
+    for (int c = 0; c < count; c++) offsets[c + 1] = offsets[c] + rowTargets[c].length;
+    int[] targets = new int[offsets[count]];
+    Object[] arcs = new Object[offsets[count]];
+    Object[] vertices = new Object[count];
+    for (int c = 0; c < count; c++) {
+      vertices[c] = Integer.valueOf(c);
+      System.arraycopy(rowTargets[c], 0, targets, offsets[c], rowTargets[c].length);
+      for (int i = 0; i < rowCounts[c].length; i++)
+        arcs[offsets[c] + i] = Integer.valueOf(rowCounts[c][i]);
+    }
+    return CsrDigraph.fromRows(vertices, offsets, targets, arcs);
+  }
+
+  private synchronized void run() {
+    if (done) return;
+    int order = digraph.order();
+    colors = new int[order];
+    componentIds = new int[order];
+    Arrays.fill(componentIds, -1);
+    inDegrees = new int[order];
+    outDegrees = new int[order];
+    preOrder = new int[order];
+    lowLink = new int[order];
+    colorCounter = new AtomicInteger(0);
+    componentCounter = new AtomicInteger(0);
+    int[] all = new int[order];
+    for (int v = 0; v < order; v++) all[v] = v;
+    pool.invoke(new ComponentTask(all, 0));
+    inDegrees = outDegrees = preOrder = lowLink = colors = null;
+    done = true;
+  }
+
+  private class ComponentTask extends RecursiveAction {
+    private int[] members;
+    private int color;
+    private ArcCursor outgoing;
+    private ArcCursor incoming;
+
+    ComponentTask(int[] members, int color) {
+      this.members = members;
+      this.color = color;
+    }
+
+    protected void compute() {
+      outgoing = new ArcCursor(digraph);
+      incoming = new ArcCursor(digraph, true);
+      int count = trim();
+      if (count == 0) return;
+      List forked = new ArrayList();
+      int[] forwardQueue = null;
+      int[] backwardQueue = null;
+      int remaining = count;
+      //pivots are taken from the members still carrying this color, so the
+      //remainder is processed in a loop rather than a recursive task
+      for (int next = 0; remaining > 0; next++) {
+        if (remaining <= sequentialThreshold) {
+          int survivors = 0;
+          for (int i = next; i < count; i++) {
+            int v = members[i];
+            if (colors[v] == color) members[survivors++] = v;
+          }
+          tarjan(survivors);
+          break;
+        }
+        int pivot = members[next];
+        if (colors[pivot] != color) continue;
+        if (forwardQueue == null) {
+          forwardQueue = new int[count];
+          backwardQueue = new int[count];
+        }
+        int forwardColor = colorCounter.incrementAndGet();
+        int backwardColor = colorCounter.incrementAndGet();
+
+        //forward closure of the pivot gets forwardColor
+        int forwardTail = 0;
+        colors[pivot] = forwardColor;
+        forwardQueue[forwardTail++] = pivot;
+        for (int head = 0; head < forwardTail; head++) {
+          int v = forwardQueue[head];
+          for (outgoing.reset(v); outgoing.hasNext();) {
+            int w = outgoing.next();
+            if (colors[w] == color) {
+              colors[w] = forwardColor;
+              forwardQueue[forwardTail++] = w;
+            }
+          }
+        }
+
+        //backward closure: forward ones form the component, others get backwardColor
+        int componentId = componentCounter.getAndIncrement();
+        int backwardTail = 0;
+        int componentSize = 1;
+        colors[pivot] = DONE;
+        componentIds[pivot] = componentId;
+        backwardQueue[backwardTail++] = pivot;
+        for (int head = 0; head < backwardTail; head++) {
+          int v = backwardQueue[head];
+          for (incoming.reset(v); incoming.hasNext();) {
+            int u = incoming.next();
+            int c = colors[u];
+            if (c == forwardColor) {
+              colors[u] = DONE;
+              componentIds[u] = componentId;
+              backwardQueue[backwardTail++] = u;
+              componentSize++;
+            } else if (c == color) {
+              colors[u] = backwardColor;
+              backwardQueue[backwardTail++] = u;
+            }
+          }
+        }
+
+        int[] forward = collect(forwardQueue, forwardTail, forwardColor);
+        int[] backward = collect(backwardQueue, backwardTail, backwardColor);
+        remaining -= componentSize + forward.length + backward.length;
+        if (forward.length > 0) forked.add(new ComponentTask(forward, forwardColor).fork());
+        if (backward.length > 0) forked.add(new ComponentTask(backward, backwardColor).fork());
+      }
+      members = null;
+      for (int i = 0; i < forked.size(); i++) ((ComponentTask)forked.get(i)).join();
+    }
+
+    private int[] collect(int[] queue, int length, int c) {
+      int count = 0;
+      for (int i = 0; i < length; i++)
+        if (colors[queue[i]] == c) count++;
+      int[] result = new int[count];
+      count = 0;
+      for (int i = 0; i < length; i++)
+        if (colors[queue[i]] == c) result[count++] = queue[i];
+      return result;
+    }
+
+    //peels vertices with no incoming or no outgoing arcs inside the color
+    //as singleton components, compacts members to the survivors
+    private int trim() {
+      int count = members.length;
+      if (count == 0) return 0;
+      int[] queue = new int[count];
+      int tail = 0;
+      for (int i = 0; i < count; i++) {
+        int v = members[i];
+        int in = 0, out = 0;
+        for (incoming.reset(v); incoming.hasNext();)
+          if (colors[incoming.next()] == color) in++;
+        for (outgoing.reset(v); outgoing.hasNext();)
+          if (colors[outgoing.next()] == color) out++;
+        inDegrees[v] = in;
+        outDegrees[v] = out;
+      }
+      for (int i = 0; i < count; i++) {
+        int v = members[i];
+        if (inDegrees[v] == 0 || outDegrees[v] == 0) {
+          colors[v] = TRIMMED;
+          queue[tail++] = v;
+        }
+      }
+      for (int head = 0; head < tail; head++) {
+        int v = queue[head];
+        colors[v] = DONE;
+        componentIds[v] = componentCounter.getAndIncrement();
+        for (outgoing.reset(v); outgoing.hasNext();) {
+          int w = outgoing.next();
+          if (colors[w] == color && --inDegrees[w] == 0) {
+            colors[w] = TRIMMED;
+            queue[tail++] = w;
+          }
+        }
+        for (incoming.reset(v); incoming.hasNext();) {
+          int u = incoming.next();
+          if (colors[u] == color && --outDegrees[u] == 0) {
+            colors[u] = TRIMMED;
+            queue[tail++] = u;
+          }
+        }
+      }
+      int survivors = 0;
+      for (int i = 0; i < count; i++) {
+        int v = members[i];
+        if (colors[v] == color) members[survivors++] = v;
+      }
+      return survivors;
+    }
+
+    private void tarjan(int count) {
+      int[] stack = new int[count];
+      int[] callVertices = new int[count];
+      //cursor positions of the vertices on the call stack
+      int[] callPositions = new int[count];
+      int depth = 0;
+      int counter = 0;
+      for (int r = 0; r < count; r++) {
+        int root = members[r];
+        if (preOrder[root] != 0) continue;
+        int callDepth = 0;
+        preOrder[root] = lowLink[root] = ++counter;
+        stack[depth++] = root;
+        callVertices[callDepth] = root;
+        callPositions[callDepth++] = outgoing.reset(root).getPosition();
+        while (callDepth > 0) {
+          int top = callDepth - 1;
+          int v = callVertices[top];
+          if (outgoing.reset(v, callPositions[top]).hasNext()) {
+            int w = outgoing.next();
+            callPositions[top] = outgoing.getPosition();
+            if (colors[w] != color) continue;
+            if (preOrder[w] == 0) {
+              preOrder[w] = lowLink[w] = ++counter;
+              stack[depth++] = w;
+              callVertices[callDepth] = w;
+              callPositions[callDepth++] = outgoing.reset(w).getPosition();
+            } else if (componentIds[w] < 0 && preOrder[w] < lowLink[v]) {
+              lowLink[v] = preOrder[w];
+            }
+          } else {
+            callDepth--;
+            if (lowLink[v] == preOrder[v]) {
+              int componentId = componentCounter.getAndIncrement();
+              int member;
+              do {
+                member = stack[--depth];
+                componentIds[member] = componentId;
+              } while (member != v);
+            }
+            if (callDepth > 0) {
+              int parent = callVertices[callDepth - 1];
+              if (lowLink[v] < lowLink[parent]) lowLink[parent] = lowLink[v];
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private class ContractTask extends RecursiveAction {
+    private static final int BATCH = 256;
+    private int[][] components;
+    private int[][] rowTargets;
+    private int[][] rowCounts;
+    private int from, to;
+
+    ContractTask(int[][] components, int[][] rowTargets, int[][] rowCounts, int from, int to) {
+      this.components = components;
+      this.rowTargets = rowTargets;
+      this.rowCounts = rowCounts;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute() {
+      if (to - from > BATCH) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new ContractTask(components, rowTargets, rowCounts, from, middle),
+                  new ContractTask(components, rowTargets, rowCounts, middle, to));
+        return;
+      }
+      ArcCursor outgoing = new ArcCursor(digraph);
+      int[] buffer = new int[16];
+      for (int c = from; c < to; c++) {
+        int length = 0;
+        int[] members = components[c];
+        for (int i = 0; i < members.length; i++) {
+          int v = members[i];
+          for (outgoing.reset(v); outgoing.hasNext();) {
+            int dst = componentIds[outgoing.next()];
+            if (dst == c) continue;
+            if (length == buffer.length) {
+              int[] tmp = new int[length * 2];
+              System.arraycopy(buffer, 0, tmp, 0, length);
+              buffer = tmp;
+            }
+            buffer[length++] = dst;
+          }
+        }
+        Arrays.sort(buffer, 0, length);
+        int distinct = 0;
+        for (int i = 0; i < length; i++)
+          if (i == 0 || buffer[i] != buffer[i - 1]) distinct++;
+        int[] targets = new int[distinct];
+        int[] counts = new int[distinct];
+        int k = -1;
+        for (int i = 0; i < length; i++) {
+          if (i == 0 || buffer[i] != buffer[i - 1]) targets[++k] = buffer[i];
+          counts[k]++;
+        }
+        rowTargets[c] = targets;
+        rowCounts[c] = counts;
+      }
+    }
+  }
+}
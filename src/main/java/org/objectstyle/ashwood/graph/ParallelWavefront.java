@@ -0,0 +1,182 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Level-synchronous topological layering of an IntDigraph. Layer 0 holds
+ * the vertices without incoming arcs and layer <code>k + 1</code> the
+ * vertices whose last predecessor is in layer <code>k</code>, so the layer
+ * of a vertex is the length of the longest path reaching it and the
+ * vertices of a layer can be processed concurrently. Each layer is expanded
+ * on a fork/join pool: the frontier is split into chunks whose tasks
+ * decrement the in-degrees of successors atomically and append the
+ * vertices reaching zero to the next frontier. Vertices on or behind a
+ * cycle are never released; isComplete() tells whether that happened.
+ */
+public class ParallelWavefront {
+  public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 1024;
+
+  private IntDigraph digraph;
+  private ForkJoinPool pool;
+  private int sequentialThreshold = DEFAULT_SEQUENTIAL_THRESHOLD;
+
+  private int[][] layers;
+  private int[] levels;
+  private int layeredCount;
+
+  public ParallelWavefront(IntDigraph digraph) {
+    this(digraph, ForkJoinPool.commonPool());
+  }
+
+  public ParallelWavefront(IntDigraph digraph, ForkJoinPool pool) {
+    this.digraph = digraph;
+    this.pool = pool;
+  }
+
+  /**
+   * Sets the frontier size up to which a layer is expanded by a single task.
+   */
+  public void setSequentialThreshold(int sequentialThreshold) {
+    this.sequentialThreshold = Math.max(1, sequentialThreshold);
+  }
+
+  /**
+   * Runs the layering (once) and returns the layers, each sorted by vertex.
+   */
+  public int[][] getLayers() {
+    run();
+    return layers;
+  }
+
+  /**
+   * Returns the layer of every vertex, -1 for vertices on or behind a cycle.
+   */
+  public int[] getLevels() {
+    run();
+    return levels;
+  }
+
+  public boolean isComplete() {
+    run();
+    return layeredCount == digraph.order();
+  }
+
+  private void run() {
+    if (layers != null) return;
+    int order = digraph.order();
+    AtomicIntegerArray inDegrees = new AtomicIntegerArray(order);
+    levels = new int[order];
+    int[] frontier = new int[order];
+    int frontierSize = 0;
+    for (int v = 0; v < order; v++) {
+      int inDegree = digraph.inDegree(v);
+      inDegrees.set(v, inDegree);
+      if (inDegree == 0) frontier[frontierSize++] = v;
+      levels[v] = -1;
+    }
+    int[] next = new int[order];
+    AtomicInteger nextSize = new AtomicInteger();
+    List result = new ArrayList();
+    while (frontierSize > 0) {
+      int level = result.size();
+      int[] layer = new int[frontierSize];
+      System.arraycopy(frontier, 0, layer, 0, frontierSize);
+      Arrays.sort(layer);
+      result.add(layer);
+      layeredCount += frontierSize;
+      nextSize.set(0);
+      LayerTask task = new LayerTask(frontier, 0, frontierSize, level, inDegrees, next, nextSize);
+      if (frontierSize <= sequentialThreshold) task.compute();
+      else pool.invoke(task);
+      int[] tmp = frontier;
+      frontier = next;
+      next = tmp;
+      frontierSize = nextSize.get();
+    }
+    layers = (int[][])result.toArray(new int[result.size()][]);
+  }
+
+  private class LayerTask extends RecursiveAction {
+    private int[] frontier;
+    private int from, to;
+    private int level;
+    private AtomicIntegerArray inDegrees;
+    private int[] next;
+    private AtomicInteger nextSize;
+
+    LayerTask(int[] frontier, int from, int to, int level,
+              AtomicIntegerArray inDegrees, int[] next, AtomicInteger nextSize) {
+      this.frontier = frontier;
+      this.from = from;
+      this.to = to;
+      this.level = level;
+      this.inDegrees = inDegrees;
+      this.next = next;
+      this.nextSize = nextSize;
+    }
+
+    protected void compute() {
+      if (to - from > sequentialThreshold) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new LayerTask(frontier, from, middle, level, inDegrees, next, nextSize),
+                  new LayerTask(frontier, middle, to, level, inDegrees, next, nextSize));
+        return;
+      }
+      ArcCursor outgoing = new ArcCursor(digraph);
+      for (int j = from; j < to; j++) {
+        int v = frontier[j];
+        levels[v] = level;
+        for (outgoing.reset(v); outgoing.hasNext();) {
+          int w = outgoing.next();
+          if (inDegrees.decrementAndGet(w) == 0) next[nextSize.getAndIncrement()] = w;
+        }
+      }
+    }
+  }
+}
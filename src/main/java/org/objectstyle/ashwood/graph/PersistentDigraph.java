@@ -0,0 +1,313 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+import java.io.Serializable;
+import org.apache.commons.collections.*;
+import org.objectstyle.ashwood.util.PersistentHashMap;
+
+/**
+ * Immutable digraph whose outgoing and incoming adjacency are kept in
+ * hash array mapped tries. Every mutator returns a new version sharing all
+ * untouched adjacency with the receiver, so a version is itself a snapshot:
+ * holding on to it costs nothing and readers of it are never affected by
+ * later updates. Vertices and arcs must not be null.
+ */
+public final class PersistentDigraph implements DigraphIteration, Serializable {
+  public static final PersistentDigraph EMPTY =
+      new PersistentDigraph(PersistentHashMap.EMPTY, PersistentHashMap.EMPTY, 0);
+
+  //vertex -> (destination -> arc)
+  private final PersistentHashMap graph;
+  //vertex -> (origin -> arc)
+  private final PersistentHashMap reverseGraph;
+  private final int size;
+
+  private PersistentDigraph(PersistentHashMap graph, PersistentHashMap reverseGraph, int size) {
+    this.graph = graph;
+    this.reverseGraph = reverseGraph;
+    this.size = size;
+  }
+
+  public static PersistentDigraph copyOf(DigraphIteration digraph) {
+    PersistentDigraph copy = EMPTY;
+    for (Iterator i = digraph.vertexIterator(); i.hasNext();)
+      copy = copy.addVertex(i.next());
+    for (ArcIterator i = digraph.arcIterator(); i.hasNext();) {
+      Object arc = i.next();
+      copy = copy.putArc(i.getOrigin(), i.getDestination(), arc);
+    }
+    return copy;
+  }
+
+  public PersistentDigraph addVertex(Object vertex) {
+    if (graph.containsKey(vertex)) return this;
+    return new PersistentDigraph(graph.put(vertex, PersistentHashMap.EMPTY),
+                                 reverseGraph.put(vertex, PersistentHashMap.EMPTY),
+                                 size);
+  }
+
+  public PersistentDigraph addAllVertices(Collection vertices) {
+    PersistentDigraph result = this;
+    for (Iterator i = vertices.iterator(); i.hasNext();)
+      result = result.addVertex(i.next());
+    return result;
+  }
+
+  public PersistentDigraph putArc(Object origin, Object destination, Object arc) {
+    PersistentDigraph result = addVertex(origin).addVertex(destination);
+    PersistentHashMap outgoing = (PersistentHashMap)result.graph.get(origin);
+    PersistentHashMap newOutgoing = outgoing.put(destination, arc);
+    if (newOutgoing == outgoing) return result;
+    PersistentHashMap incoming = (PersistentHashMap)result.reverseGraph.get(destination);
+    return new PersistentDigraph(result.graph.put(origin, newOutgoing),
+                                 result.reverseGraph.put(destination, incoming.put(origin, arc)),
+                                 newOutgoing.size() > outgoing.size() ? result.size + 1 : result.size);
+  }
+
+  public PersistentDigraph removeArc(Object origin, Object destination) {
+    PersistentHashMap outgoing = outgoing(origin);
+    if (outgoing == null || !outgoing.containsKey(destination)) return this;
+    PersistentHashMap incoming = incoming(destination);
+    return new PersistentDigraph(graph.put(origin, outgoing.remove(destination)),
+                                 reverseGraph.put(destination, incoming.remove(origin)),
+                                 size - 1);
+  }
+
+  public PersistentDigraph removeVertex(Object vertex) {
+    if (!graph.containsKey(vertex)) return this;
+    PersistentDigraph result = removeIncoming(vertex).removeOutgoing(vertex);
+    return new PersistentDigraph(result.graph.remove(vertex),
+                                 result.reverseGraph.remove(vertex),
+                                 result.size);
+  }
+
+  public PersistentDigraph removeAllVertices(Collection vertices) {
+    PersistentDigraph result = this;
+    for (Iterator i = vertices.iterator(); i.hasNext();)
+      result = result.removeVertex(i.next());
+    return result;
+  }
+
+  public PersistentDigraph removeOutgoing(Object vertex) {
+    PersistentHashMap outgoing = outgoing(vertex);
+    if (outgoing == null || outgoing.isEmpty()) return this;
+    PersistentHashMap newReverseGraph = reverseGraph;
+    for (MapIterator i = outgoing.mapIterator(); i.hasNext();) {
+      Object destination = i.next();
+      PersistentHashMap incoming = (PersistentHashMap)newReverseGraph.get(destination);
+      newReverseGraph = newReverseGraph.put(destination, incoming.remove(vertex));
+    }
+    return new PersistentDigraph(graph.put(vertex, PersistentHashMap.EMPTY),
+                                 newReverseGraph,
+                                 size - outgoing.size());
+  }
+
+  public PersistentDigraph removeIncoming(Object vertex) {
+    PersistentHashMap incoming = incoming(vertex);
+    if (incoming == null || incoming.isEmpty()) return this;
+    PersistentHashMap newGraph = graph;
+    for (MapIterator i = incoming.mapIterator(); i.hasNext();) {
+      Object origin = i.next();
+      PersistentHashMap outgoing = (PersistentHashMap)newGraph.get(origin);
+      newGraph = newGraph.put(origin, outgoing.remove(vertex));
+    }
+    return new PersistentDigraph(newGraph,
+                                 reverseGraph.put(vertex, PersistentHashMap.EMPTY),
+                                 size - incoming.size());
+  }
+
+  public Object getArc(Object origin, Object destination) {
+    PersistentHashMap outgoing = outgoing(origin);
+    return (outgoing != null ? outgoing.get(destination) : null);
+  }
+
+  public boolean hasArc(Object origin, Object destination) {
+    return getArc(origin, destination) != null;
+  }
+
+  public boolean containsVertex(Object vertex) {
+    return graph.containsKey(vertex);
+  }
+
+  public boolean containsAllVertices(Collection vertices) {
+    for (Iterator i = vertices.iterator(); i.hasNext();)
+      if (!graph.containsKey(i.next())) return false;
+    return true;
+  }
+
+  public int order() {
+    return graph.size();
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return graph.isEmpty();
+  }
+
+  public int outgoingSize(Object vertex) {
+    PersistentHashMap outgoing = outgoing(vertex);
+    return (outgoing != null ? outgoing.size() : 0);
+  }
+
+  public int incomingSize(Object vertex) {
+    PersistentHashMap incoming = incoming(vertex);
+    return (incoming != null ? incoming.size() : 0);
+  }
+
+  public boolean isOutgoingEmpty(Object vertex) {
+    return outgoingSize(vertex) == 0;
+  }
+
+  public boolean isIncomingEmpty(Object vertex) {
+    return incomingSize(vertex) == 0;
+  }
+
+  public Iterator vertexIterator() {
+    return new UnmodifiableKeyIterator(graph.mapIterator());
+  }
+
+  public ArcIterator arcIterator() {
+    return new AllArcIterator();
+  }
+
+  public ArcIterator outgoingIterator(Object vertex) {
+    PersistentHashMap outgoing = outgoing(vertex);
+    if (outgoing == null) return ArcIterator.EMPTY_ITERATOR;
+    return new AdjacentArcIterator(vertex, outgoing.mapIterator(), false);
+  }
+
+  public ArcIterator incomingIterator(Object vertex) {
+    PersistentHashMap incoming = incoming(vertex);
+    if (incoming == null) return ArcIterator.EMPTY_ITERATOR;
+    return new AdjacentArcIterator(vertex, incoming.mapIterator(), true);
+  }
+
+  private PersistentHashMap outgoing(Object vertex) {
+    return (PersistentHashMap)graph.get(vertex);
+  }
+
+  private PersistentHashMap incoming(Object vertex) {
+    return (PersistentHashMap)reverseGraph.get(vertex);
+  }
+
+  private static class UnmodifiableKeyIterator implements Iterator {
+    private MapIterator keys;
+
+    private UnmodifiableKeyIterator(MapIterator keys) {
+      this.keys = keys;
+    }
+    public boolean hasNext() {
+      return keys.hasNext();
+    }
+    public Object next() {
+      return keys.next();
+    }
+    public void remove() {
+      throw new UnsupportedOperationException("PersistentDigraph is immutable.");
+    }
+  }
+
+  private static class AdjacentArcIterator implements ArcIterator {
+    private Object vertex;
+    private Object neighbor;
+    private MapIterator neighbors;
+    private boolean incoming;
+
+    private AdjacentArcIterator(Object vertex, MapIterator neighbors, boolean incoming) {
+      this.vertex = vertex;
+      this.neighbors = neighbors;
+      this.incoming = incoming;
+    }
+    public Object getOrigin() {
+      return (incoming ? neighbor : vertex);
+    }
+    public Object getDestination() {
+      return (incoming ? vertex : neighbor);
+    }
+    public boolean hasNext() {
+      return neighbors.hasNext();
+    }
+    public Object next() {
+      neighbor = neighbors.next();
+      return neighbors.getValue();
+    }
+    public void remove() {
+      throw new UnsupportedOperationException("PersistentDigraph is immutable.");
+    }
+  }
+
+  private class AllArcIterator implements ArcIterator {
+    private MapIterator origins = graph.mapIterator();
+    private MapIterator destinations = IteratorUtils.EMPTY_MAP_ITERATOR;
+    private Object origin, destination;
+    private Object nextOrigin;
+
+    public Object getOrigin() {
+      return origin;
+    }
+    public Object getDestination() {
+      return destination;
+    }
+    public boolean hasNext() {
+      while (!destinations.hasNext() && origins.hasNext()) {
+        nextOrigin = origins.next();
+        destinations = ((PersistentHashMap)origins.getValue()).mapIterator();
+      }
+      return destinations.hasNext();
+    }
+    public Object next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      origin = nextOrigin;
+      destination = destinations.next();
+      return destinations.getValue();
+    }
+    public void remove() {
+      throw new UnsupportedOperationException("PersistentDigraph is immutable.");
+    }
+  }
+}
@@ -0,0 +1,256 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+
+/**
+ * Index answering "does <code>origin</code> reach <code>destination</code>"
+ * without a full traversal per query. The digraph is condensed into its DAG
+ * of strongly connected components, which is labeled GRAIL style: every
+ * labeling is a randomized depth-first pass giving each component the
+ * interval [lowest postorder number below it, its own postorder number].
+ * If the destination's interval is not nested in the origin's for some
+ * labeling, or the destination comes earlier in topological order, the
+ * answer is no. Otherwise a depth-first search that skips components
+ * failing the same tests decides. Vertices of one component reach each
+ * other, and every vertex reaches itself.
+ * <p>
+ * The index takes a snapshot of the digraph and is not updated afterwards.
+ * Queries may be issued concurrently; each thread gets its own scratch
+ * arrays for the fallback search.
+ */
+public class ReachabilityIndex {
+  public static final int DEFAULT_LABEL_COUNT = 3;
+
+  private VertexIndex vertexIndex;
+  private int[] componentIds;
+  private int componentCount;
+  //condensation rows
+  private int[] offsets;
+  private int[] targets;
+  private int[] topologicalRanks;
+  private int labelCount;
+  //(low, post) pairs, labelCount of them per component
+  private int[] labels;
+  private ThreadLocal searches;
+
+  public ReachabilityIndex(DigraphIteration digraph) {
+    this(digraph, DEFAULT_LABEL_COUNT, 0L);
+  }
+
+  public ReachabilityIndex(DigraphIteration digraph, int labelCount, long seed) {
+    if (labelCount < 1) throw new IllegalArgumentException("labelCount=" + labelCount);
+    this.labelCount = labelCount;
+    CsrDigraph csr = CsrDigraph.copyOf(digraph);
+    vertexIndex = csr.getVertexIndex();
+    ParallelStrongConnection components = new ParallelStrongConnection(csr);
+    componentIds = components.getComponentIds();
+    CsrDigraph condensation = components.contract();
+    componentCount = condensation.order();
+    offsets = new int[componentCount + 1];
+    targets = new int[condensation.size()];
+    for (int c = 0; c < componentCount; c++) {
+      offsets[c + 1] = offsets[c] + condensation.outDegree(c);
+      for (int i = 0; i < condensation.outDegree(c); i++)
+        targets[offsets[c] + i] = condensation.target(c, i);
+    }
+    topologicalRanks = new int[componentCount];
+    int[] order = new IntTopologicalSort(condensation).sort();
+    for (int i = 0; i < componentCount; i++) topologicalRanks[order[i]] = i;
+    labels = new int[2 * labelCount * componentCount];
+    Random random = new Random(seed);
+    for (int i = 0; i < labelCount; i++) label(i, (i > 0 ? random : null));
+    searches = new ThreadLocal() {
+      protected Object initialValue() {
+        return new Search(componentCount);
+      }
+    };
+  }
+
+  public int getComponentCount() {
+    return componentCount;
+  }
+
+  /**
+   * Returns the id of the vertex's component in the condensation or -1 if
+   * the vertex is unknown.
+   */
+  public int getComponentId(Object vertex) {
+    int v = vertexIndex.indexOf(vertex);
+    return (v >= 0 ? componentIds[v] : -1);
+  }
+
+  public boolean reaches(Object origin, Object destination) {
+    int o = getComponentId(origin);
+    int d = getComponentId(destination);
+    if (o < 0 || d < 0) return false;
+    return reaches(o, d, (Search)searches.get());
+  }
+
+  /**
+   * Answers <code>origins.length</code> queries; element <code>i</code> of
+   * the result tells whether <code>origins[i]</code> reaches
+   * <code>destinations[i]</code>.
+   */
+  public boolean[] reaches(Object[] origins, Object[] destinations) {
+    if (origins.length != destinations.length)
+      throw new IllegalArgumentException("origins.length != destinations.length");
+    boolean[] result = new boolean[origins.length];
+    Search search = (Search)searches.get();
+    for (int i = 0; i < origins.length; i++) {
+      int o = getComponentId(origins[i]);
+      int d = getComponentId(destinations[i]);
+      result[i] = (o >= 0 && d >= 0 && reaches(o, d, search));
+    }
+    return result;
+  }
+
+  private boolean reaches(int origin, int destination, Search search) {
+    if (origin == destination) return true;
+    if (!mayReach(origin, destination)) return false;
+    int[] stack = search.stack;
+    int[] stamps = search.stamps;
+    int stamp = search.nextStamp();
+    int depth = 0;
+    stack[depth++] = origin;
+    stamps[origin] = stamp;
+    while (depth > 0) {
+      int c = stack[--depth];
+      for (int k = offsets[c]; k < offsets[c + 1]; k++) {
+        int w = targets[k];
+        if (w == destination) return true;
+        if (stamps[w] == stamp) continue;
+        stamps[w] = stamp;
+        if (mayReach(w, destination)) stack[depth++] = w;
+      }
+    }
+    return false;
+  }
+
+  private boolean mayReach(int origin, int destination) {
+    if (topologicalRanks[origin] >= topologicalRanks[destination]) return false;
+    int o = 2 * labelCount * origin;
+    int d = 2 * labelCount * destination;
+    for (int i = 0; i < 2 * labelCount; i += 2) {
+      if (labels[o + i] > labels[d + i] || labels[o + i + 1] < labels[d + i + 1]) return false;
+    }
+    return true;
+  }
+
+  //iterative postorder pass; roots and children are visited in random order
+  //unless random is null
+  private void label(int labeling, Random random) {
+    int[] roots = new int[componentCount];
+    for (int c = 0; c < componentCount; c++) roots[c] = c;
+    if (random != null) {
+      for (int c = componentCount - 1; c > 0; c--) {
+        int j = random.nextInt(c + 1);
+        int tmp = roots[c];
+        roots[c] = roots[j];
+        roots[j] = tmp;
+      }
+    }
+    boolean[] visited = new boolean[componentCount];
+    int[] stack = new int[componentCount];
+    int[] positions = new int[componentCount];
+    int[] starts = new int[componentCount];
+    int[] lows = new int[componentCount];
+    int postorder = 0;
+    for (int r = 0; r < componentCount; r++) {
+      int root = roots[r];
+      if (visited[root]) continue;
+      int depth = 0;
+      stack[depth] = root;
+      positions[depth] = 0;
+      starts[depth] = start(root, random);
+      lows[depth++] = Integer.MAX_VALUE;
+      visited[root] = true;
+      while (depth > 0) {
+        int top = depth - 1;
+        int c = stack[top];
+        int degree = offsets[c + 1] - offsets[c];
+        if (positions[top] < degree) {
+          int w = targets[offsets[c] + (starts[top] + positions[top]++) % degree];
+          if (!visited[w]) {
+            visited[w] = true;
+            stack[depth] = w;
+            positions[depth] = 0;
+            starts[depth] = start(w, random);
+            lows[depth++] = Integer.MAX_VALUE;
+          } else lows[top] = Math.min(lows[top], labels[2 * (labelCount * w + labeling)]);
+          continue;
+        }
+        int low = Math.min(lows[top], ++postorder);
+        labels[2 * (labelCount * c + labeling)] = low;
+        labels[2 * (labelCount * c + labeling) + 1] = postorder;
+        depth--;
+        if (depth > 0) lows[depth - 1] = Math.min(lows[depth - 1], low);
+      }
+    }
+  }
+
+  private int start(int c, Random random) {
+    int degree = offsets[c + 1] - offsets[c];
+    return (random != null && degree > 1 ? random.nextInt(degree) : 0);
+  }
+
+  private static class Search {
+    int[] stack;
+    int[] stamps;
+    int stamp;
+
+    Search(int componentCount) {
+      stack = new int[componentCount];
+      stamps = new int[componentCount];
+    }
+
+    int nextStamp() {
+      if (++stamp == Integer.MAX_VALUE) {
+        Arrays.fill(stamps, 0);
+        stamp = 1;
+      }
+      return stamp;
+    }
+  }
+}
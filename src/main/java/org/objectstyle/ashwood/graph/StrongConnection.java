@@ -45,59 +45,78 @@ package org.objectstyle.ashwood.graph;
 import java.util.*;
 import org.apache.commons.collections.*;
 
+/**
+ * Enumerates strongly connected components with an iterative version of
+ * Tarjan's algorithm: a single O(V+E) depth first pass with lowlinks kept
+ * in int arrays indexed by dense vertex ids. Components of one DFS tree are
+ * returned in topological order of the condensation, trees in the order
+ * their roots appear in vertexIterator().
+ */
 public class StrongConnection extends Algorithm {
   private DigraphIteration digraph;
-  private DigraphIteration reverseDigraph;
-  private DigraphIteration filteredDigraph;
-  private DepthFirstStampSearch directDfs;
-  private DepthFirstSearch reverseDfs;
-  private Set seen = new HashSet();
-  private Iterator vertexIterator;
-  private ArrayStack dfsStack = new ArrayStack();
-  private DFSSeenVerticesPredicate reverseDFSFilter = new DFSSeenVerticesPredicate();
   private CollectionFactory componentFactory;
+  private Iterator vertexIterator;
+  private VertexIndex vertexIndex = new VertexIndex();
+
+  //preorder number, 0 - not visited yet
+  private int[] preOrder = new int[16];
+  private int[] lowLink = new int[16];
+  //component id, -1 - not assigned yet
+  private int[] componentIds = new int[16];
+  private int counter;
 
+  private int[] tarjanStack = new int[16];
+  private int tarjanDepth;
+  private int[] callVertices = new int[16];
+  private ArcIterator[] callIterators = new ArcIterator[16];
+
+  //all components built so far, by id
+  private List components = new ArrayList();
+  //components of the current DFS tree not yet returned
+  private ArrayStack pending = new ArrayStack();
 
   public StrongConnection(DigraphIteration digraph, CollectionFactory componentFactory) {
     this.digraph = digraph;
     this.componentFactory = componentFactory;
-    filteredDigraph = new FilterIteration(digraph, new NotSeenPredicate(), GraphUtils.TRUE_PREDICATE);
-    reverseDigraph = new FilterIteration(new ReversedIteration(digraph), reverseDFSFilter, GraphUtils.TRUE_PREDICATE);
-    vertexIterator = filteredDigraph.vertexIterator();
-    runDirectDFS();
+    vertexIterator = digraph.vertexIterator();
+    advance();
   }
   public boolean hasNext() {
-    return !dfsStack.isEmpty();
+    return !pending.isEmpty();
   }
   public Object next() {
-    Collection component = buildStronglyConnectedComponent();
-    if (dfsStack.isEmpty()) runDirectDFS();
+    if (pending.isEmpty()) throw new NoSuchElementException();
+    Collection component = (Collection)pending.pop();
+    if (pending.isEmpty()) advance();
     return component;
   }
 
+  /**
+   * Returns the id of the component containing the vertex, ids being
+   * assigned 0, 1, ... in the order components are completed, or -1 if the
+   * vertex has not been reached yet.
+   */
+  public int getComponentId(Object vertex) {
+    int id = vertexIndex.indexOf(vertex);
+    return (id >= 0 ? componentIds[id] : -1);
+  }
+
   public Digraph contract(Digraph contractedDigraph) {
     return contract(contractedDigraph, null);
   }
 
   public Digraph contract(Digraph contractedDigraph, CollectionFactory arcFactory) {
-    List components = new ArrayList();
-    CollectionUtils.addAll(components, this);
-    Map memberToComponent = new HashMap();
-    for (Iterator i = components.iterator(); i.hasNext();) {
-      Collection c = (Collection)i.next();
-      for (Iterator j = c.iterator(); j.hasNext();)
-        memberToComponent.put(j.next(), c);
-    }
-    for (Iterator i = components.iterator(); i.hasNext();) {
-      Collection origin = (Collection)i.next();
+    while (hasNext()) next();
+    for (int c = 0; c < components.size(); c++) {
+      Collection origin = (Collection)components.get(c);
       contractedDigraph.addVertex(origin);
       for (Iterator j = origin.iterator(); j.hasNext();) {
         Object member = j.next();
         for (ArcIterator k = digraph.outgoingIterator(member); k.hasNext();) {
           Object arc = k.next();
-          Object dst = k.getDestination();
-          if (origin.contains(dst)) continue;
-          Collection destination = (Collection)memberToComponent.get(dst);
+          int dstComponent = componentIds[vertexIndex.indexOf(k.getDestination())];
+          if (dstComponent == c) continue;
+          Collection destination = (Collection)components.get(dstComponent);
           if (arcFactory == null)
             contractedDigraph.putArc(origin, destination, arc);
           else {
@@ -121,73 +140,99 @@ public class StrongConnection extends Algorithm {
     return contractedDigraph;
   }
 
-  private Object nextDFSRoot() {
-    /*while (vertexIterator.hasNext()) {
-      Object vertex = vertexIterator.next();
-      if (!seen.contains(vertex)) return vertex;
+  private void advance() {
+    while (pending.isEmpty() && vertexIterator.hasNext()) {
+      Object root = vertexIterator.next();
+      int id = register(root);
+      if (preOrder[id] == 0) runTarjan(root, id);
     }
-    return null;*/
-    return (vertexIterator.hasNext() ? vertexIterator.next() : null);
   }
 
-  private boolean runDirectDFS() {
-    dfsStack.clear();
-    reverseDFSFilter.seenVertices.clear();
-    Object root = nextDFSRoot();
-    if (root == null) return false;
-    if (directDfs == null) directDfs = new DepthFirstStampSearch(filteredDigraph, root);
-    else directDfs.reset(root);
-    int stamp;
-    Object vertex;
-    while (directDfs.hasNext()) {
-      vertex = directDfs.next();
-      stamp = directDfs.getStamp();
-      if (stamp == DepthFirstStampSearch.SHRINK_STAMP ||
-          stamp == DepthFirstStampSearch.LEAF_STAMP) {
-        //if (seen.add(vertex)) {
-          dfsStack.push(vertex);
-          reverseDFSFilter.seenVertices.add(vertex);
-        //}
+  private int register(Object vertex) {
+    int newId = vertexIndex.size();
+    int id = vertexIndex.add(vertex);
+    if (id == newId) {
+      if (id == preOrder.length) {
+        preOrder = grow(preOrder, id * 2);
+        lowLink = grow(lowLink, id * 2);
+        componentIds = grow(componentIds, id * 2);
       }
+      componentIds[id] = -1;
     }
-    seen.addAll(dfsStack);
-    return true;
+    return id;
   }
 
-  private Collection buildStronglyConnectedComponent() {
-    Object root = dfsStack.pop();
-    Collection component = componentFactory.createSingleton(root);
-    boolean singleton = true;
-    if (reverseDfs == null) reverseDfs = new DepthFirstSearch(reverseDigraph, root);
-    else reverseDfs.reset(root);
-    while (reverseDfs.hasNext()) {
-      Object vertex = reverseDfs.next();
-      if (vertex != root) {
-        if (singleton) {
-          Collection tmp = component;
-          component = componentFactory.create();
-          component.addAll(tmp);
-          singleton = false;
+  private void runTarjan(Object root, int rootId) {
+    int callDepth = 0;
+    visit(rootId);
+    pushCall(callDepth++, rootId, digraph.outgoingIterator(root));
+    while (callDepth > 0) {
+      int top = callDepth - 1;
+      int v = callVertices[top];
+      ArcIterator i = callIterators[top];
+      if (i.hasNext()) {
+        i.next();
+        Object dst = i.getDestination();
+        int w = register(dst);
+        if (preOrder[w] == 0) {
+          visit(w);
+          pushCall(callDepth++, w, digraph.outgoingIterator(dst));
+        } else if (componentIds[w] < 0 && preOrder[w] < lowLink[v]) {
+          lowLink[v] = preOrder[w];
+        }
+      } else {
+        callIterators[top] = null;
+        callDepth--;
+        if (lowLink[v] == preOrder[v]) buildComponent(v);
+        if (callDepth > 0) {
+          int parent = callVertices[callDepth - 1];
+          if (lowLink[v] < lowLink[parent]) lowLink[parent] = lowLink[v];
         }
-        component.add(vertex);
-        dfsStack.remove(vertex);
       }
     }
-    reverseDFSFilter.seenVertices.removeAll(component);
-    return component;
   }
 
-  private class DFSSeenVerticesPredicate implements Predicate {
-    private Set seenVertices = new HashSet();
+  private void visit(int id) {
+    preOrder[id] = lowLink[id] = ++counter;
+    if (tarjanDepth == tarjanStack.length) tarjanStack = grow(tarjanStack, tarjanDepth * 2);
+    tarjanStack[tarjanDepth++] = id;
+  }
 
-    public boolean evaluate(Object vertex) {
-      return seenVertices.contains(vertex);
+  private void pushCall(int depth, int id, ArcIterator iterator) {
+    if (depth == callVertices.length) {
+      callVertices = grow(callVertices, depth * 2);
+      ArcIterator[] tmp = new ArcIterator[depth * 2];
+      System.arraycopy(callIterators, 0, tmp, 0, depth);
+      callIterators = tmp;
     }
+    callVertices[depth] = id;
+    callIterators[depth] = iterator;
   }
 
-  private class NotSeenPredicate implements Predicate {
-    public boolean evaluate(Object vertex) {
-      return !seen.contains(vertex);
+  private void buildComponent(int root) {
+    int componentId = components.size();
+    Collection component;
+    if (tarjanStack[tarjanDepth - 1] == root) {
+      tarjanDepth--;
+      componentIds[root] = componentId;
+      component = componentFactory.createSingleton(vertexIndex.vertexAt(root));
+    } else {
+      component = componentFactory.create();
+      int member;
+      do {
+        member = tarjanStack[--tarjanDepth];
+        componentIds[member] = componentId;
+        component.add(vertexIndex.vertexAt(member));
+      } while (member != root);
     }
+    components.add(component);
+    //Tarjan completes sink components first, the stack reverses that
+    pending.push(component);
+  }
+
+  private static int[] grow(int[] array, int capacity) {
+    int[] tmp = new int[capacity];
+    System.arraycopy(array, 0, tmp, 0, array.length);
+    return tmp;
   }
 }
@@ -0,0 +1,288 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.objectstyle.ashwood.util.BitUtils;
+
+/**
+ * Transitive closure and transitive reduction of a digraph, computed on
+ * the condensation into strongly connected components. Components are
+ * visited in reverse topological order, layer by layer from the sinks, and
+ * the reach set of a component is the bitwise union of its successors'
+ * sets, so each row is built with word-parallel ors. Components of one
+ * layer depend only on earlier layers and are processed concurrently on a
+ * fork/join pool.
+ * <p>
+ * The closure has an arc from <code>u</code> to <code>v</code> whenever a
+ * non-empty path leads from <code>u</code> to <code>v</code>. The reduction
+ * is a smallest digraph with the same reachability: the members of every
+ * non-trivial component are linked into a cycle, and of the arcs between
+ * components only those not implied by another path are kept, each
+ * represented by one original arc. For a DAG the reduction is the unique
+ * minimal subgraph. Both are written into a digraph supplied by the
+ * caller; arcs present in the input keep their values, the others get the
+ * value passed in.
+ */
+public class TransitiveClosure {
+  public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 64;
+
+  private CsrDigraph digraph;
+  private ForkJoinPool pool;
+  private int sequentialThreshold = DEFAULT_SEQUENTIAL_THRESHOLD;
+
+  private int[] componentIds;
+  private int[][] components;
+  private CsrDigraph condensation;
+  //components reachable from each component by a non-empty path
+  private long[][] reach;
+  //condensation arcs kept by the reduction
+  private long[][] essential;
+
+  public TransitiveClosure(DigraphIteration digraph) {
+    this(digraph, ForkJoinPool.commonPool());
+  }
+
+  public TransitiveClosure(DigraphIteration digraph, ForkJoinPool pool) {
+    this.digraph = CsrDigraph.copyOf(digraph);
+    this.pool = pool;
+  }
+
+  /**
+   * Sets the number of components up to which a layer is handled by a
+   * single task.
+   */
+  public void setSequentialThreshold(int sequentialThreshold) {
+    this.sequentialThreshold = Math.max(1, sequentialThreshold);
+  }
+
+  /**
+   * Returns true if a non-empty path leads from the origin to the
+   * destination.
+   */
+  public boolean reaches(Object origin, Object destination) {
+    int u = digraph.indexOf(origin);
+    int v = digraph.indexOf(destination);
+    if (u < 0 || v < 0) return false;
+    computeClosure();
+    return BitUtils.get(reach[componentIds[u]], componentIds[v]);
+  }
+
+  /**
+   * Adds every vertex and every arc of the closure to the target and
+   * returns it.
+   */
+  public Digraph closure(Digraph target, Object arc) {
+    computeClosure();
+    addVertices(target);
+    int order = digraph.order();
+    for (int u = 0; u < order; u++) {
+      Object origin = digraph.vertexAt(u);
+      long[] row = reach[componentIds[u]];
+      for (int c = BitUtils.nextSetBit(row, 0); c >= 0; c = BitUtils.nextSetBit(row, c + 1)) {
+        int[] members = components[c];
+        for (int i = 0; i < members.length; i++) putArc(target, u, members[i], arc);
+      }
+    }
+    return target;
+  }
+
+  /**
+   * Adds every vertex and every arc of the reduction to the target and
+   * returns it.
+   */
+  public Digraph reduction(Digraph target, Object arc) {
+    computeReduction();
+    addVertices(target);
+    for (int c = 0; c < components.length; c++) {
+      int[] members = components[c];
+      if (members.length > 1) {
+        for (int i = 0; i < members.length; i++)
+          putArc(target, members[i], members[(i + 1) % members.length], arc);
+      } else if (BitUtils.get(reach[c], c)) putArc(target, members[0], members[0], arc);
+    }
+    //one original arc stands for every essential condensation arc
+    long[][] pending = new long[essential.length][];
+    for (int c = 0; c < essential.length; c++) pending[c] = essential[c].clone();
+    int order = digraph.order();
+    for (int u = 0; u < order; u++) {
+      long[] row = pending[componentIds[u]];
+      for (int p = digraph.outStart(u), end = digraph.outEnd(u); p < end; p++) {
+        int v = digraph.arcTarget(p);
+        int d = componentIds[v];
+        if (BitUtils.get(row, d)) {
+          BitUtils.clear(row, d);
+          target.putArc(digraph.vertexAt(u), digraph.vertexAt(v), digraph.arcAt(p));
+        }
+      }
+    }
+    return target;
+  }
+
+  private void addVertices(Digraph target) {
+    for (int v = 0, order = digraph.order(); v < order; v++) target.addVertex(digraph.vertexAt(v));
+  }
+
+  private void putArc(Digraph target, int u, int v, Object arc) {
+    int position = digraph.arcPosition(u, v);
+    target.putArc(digraph.vertexAt(u), digraph.vertexAt(v), (position >= 0 ? digraph.arcAt(position) : arc));
+  }
+
+  private synchronized void computeClosure() {
+    if (reach != null) return;
+    ParallelStrongConnection strongConnection = new ParallelStrongConnection(digraph, pool);
+    componentIds = strongConnection.getComponentIds();
+    components = strongConnection.getComponents();
+    condensation = strongConnection.contract();
+    int count = components.length;
+    long[][] rows = new long[count][];
+    for (int c = 0; c < count; c++) {
+      rows[c] = BitUtils.create(count);
+      int[] members = components[c];
+      if (members.length > 1 || digraph.arcPosition(members[0], members[0]) >= 0)
+        BitUtils.set(rows[c], c);
+    }
+    //layers of the reversed condensation, sinks first
+    IntDigraph reversed = new IntDigraph() {
+      public int order() {
+        return condensation.order();
+      }
+      public int size() {
+        return condensation.size();
+      }
+      public int outDegree(int vertex) {
+        return condensation.inDegree(vertex);
+      }
+      public int target(int vertex, int i) {
+        return condensation.source(vertex, i);
+      }
+      public int inDegree(int vertex) {
+        return condensation.outDegree(vertex);
+      }
+      public int source(int vertex, int i) {
+        return condensation.target(vertex, i);
+      }
+    };
+    int[][] layers = new ParallelWavefront(reversed, pool).getLayers();
+    for (int i = 0; i < layers.length; i++) {
+      RowTask task = new RowTask(layers[i], 0, layers[i].length, rows, false);
+      if (layers[i].length <= sequentialThreshold) task.compute();
+      else pool.invoke(task);
+    }
+    reach = rows;
+  }
+
+  private synchronized void computeReduction() {
+    if (essential != null) return;
+    computeClosure();
+    int count = components.length;
+    int[] all = new int[count];
+    for (int c = 0; c < count; c++) all[c] = c;
+    long[][] rows = new long[count][];
+    RowTask task = new RowTask(all, 0, count, rows, true);
+    if (count <= sequentialThreshold) task.compute();
+    else pool.invoke(task);
+    essential = rows;
+  }
+
+  private class RowTask extends RecursiveAction {
+    private int[] layer;
+    private int from, to;
+    private long[][] rows;
+    private boolean reduction;
+
+    RowTask(int[] layer, int from, int to, long[][] rows, boolean reduction) {
+      this.layer = layer;
+      this.from = from;
+      this.to = to;
+      this.rows = rows;
+      this.reduction = reduction;
+    }
+
+    protected void compute() {
+      if (to - from > sequentialThreshold) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new RowTask(layer, from, middle, rows, reduction),
+                  new RowTask(layer, middle, to, rows, reduction));
+        return;
+      }
+      for (int j = from; j < to; j++) {
+        if (reduction) reduce(layer[j]);
+        else close(layer[j]);
+      }
+    }
+
+    private void close(int c) {
+      long[] row = rows[c];
+      for (int i = 0, degree = condensation.outDegree(c); i < degree; i++) {
+        int d = condensation.target(c, i);
+        BitUtils.set(row, d);
+        BitUtils.or(row, rows[d]);
+      }
+    }
+
+    //a successor is redundant if another successor reaches it
+    private void reduce(int c) {
+      int degree = condensation.outDegree(c);
+      long[] implied = BitUtils.create(components.length);
+      for (int i = 0; i < degree; i++) BitUtils.or(implied, reach[condensation.target(c, i)]);
+      long[] row = BitUtils.create(components.length);
+      for (int i = 0; i < degree; i++) {
+        int d = condensation.target(c, i);
+        if (!BitUtils.get(implied, d) || (BitUtils.get(reach[d], d) && !reachedByOther(c, d)))
+          BitUtils.set(row, d);
+      }
+      rows[c] = row;
+    }
+
+    //a cyclic successor sets its own bit, so the union alone cannot tell
+    private boolean reachedByOther(int c, int d) {
+      for (int i = 0, degree = condensation.outDegree(c); i < degree; i++) {
+        int e = condensation.target(c, i);
+        if (e != d && BitUtils.get(reach[e], d)) return true;
+      }
+      return false;
+    }
+  }
+}
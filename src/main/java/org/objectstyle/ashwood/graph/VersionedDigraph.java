@@ -0,0 +1,176 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+import java.io.Serializable;
+
+/**
+ * Mutable Digraph backed by a PersistentDigraph. Writers are serialized and
+ * swap in a new version on every update; snapshot() hands out the current
+ * version in O(1) for analysis, in place of copying the graph, and readers
+ * never block writers.
+ */
+public class VersionedDigraph implements Digraph, Serializable {
+  private volatile PersistentDigraph current;
+
+  public VersionedDigraph() {
+    this(PersistentDigraph.EMPTY);
+  }
+
+  public VersionedDigraph(PersistentDigraph initial) {
+    current = initial;
+  }
+
+  public PersistentDigraph snapshot() {
+    return current;
+  }
+
+  public synchronized boolean addVertex(Object vertex) {
+    PersistentDigraph old = current;
+    current = old.addVertex(vertex);
+    return current != old;
+  }
+
+  public synchronized boolean addAllVertices(Collection vertices) {
+    PersistentDigraph old = current;
+    current = old.addAllVertices(vertices);
+    return current != old;
+  }
+
+  public synchronized Object putArc(Object origin, Object destination, Object arc) {
+    Object oldArc = current.getArc(origin, destination);
+    current = current.putArc(origin, destination, arc);
+    return oldArc;
+  }
+
+  public Object getArc(Object origin, Object destination) {
+    return current.getArc(origin, destination);
+  }
+
+  public synchronized boolean removeVertex(Object vertex) {
+    PersistentDigraph old = current;
+    current = old.removeVertex(vertex);
+    return current != old;
+  }
+
+  public synchronized boolean removeAllVertices(Collection vertices) {
+    PersistentDigraph old = current;
+    current = old.removeAllVertices(vertices);
+    return current != old;
+  }
+
+  public synchronized Object removeArc(Object origin, Object destination) {
+    Object oldArc = current.getArc(origin, destination);
+    current = current.removeArc(origin, destination);
+    return oldArc;
+  }
+
+  public synchronized boolean removeIncoming(Object vertex) {
+    PersistentDigraph old = current;
+    current = old.removeIncoming(vertex);
+    return current != old;
+  }
+
+  public synchronized boolean removeOutgoing(Object vertex) {
+    PersistentDigraph old = current;
+    current = old.removeOutgoing(vertex);
+    return current != old;
+  }
+
+  public Iterator vertexIterator() {
+    return current.vertexIterator();
+  }
+
+  public ArcIterator arcIterator() {
+    return current.arcIterator();
+  }
+
+  public ArcIterator outgoingIterator(Object vertex) {
+    return current.outgoingIterator(vertex);
+  }
+
+  public ArcIterator incomingIterator(Object vertex) {
+    return current.incomingIterator(vertex);
+  }
+
+  public int order() {
+    return current.order();
+  }
+
+  public int size() {
+    return current.size();
+  }
+
+  public int outgoingSize(Object vertex) {
+    return current.outgoingSize(vertex);
+  }
+
+  public int incomingSize(Object vertex) {
+    return current.incomingSize(vertex);
+  }
+
+  public boolean containsVertex(Object vertex) {
+    return current.containsVertex(vertex);
+  }
+
+  public boolean containsAllVertices(Collection vertices) {
+    return current.containsAllVertices(vertices);
+  }
+
+  public boolean hasArc(Object origin, Object destination) {
+    return current.hasArc(origin, destination);
+  }
+
+  public boolean isEmpty() {
+    return current.isEmpty();
+  }
+
+  public boolean isOutgoingEmpty(Object vertex) {
+    return current.isOutgoingEmpty(vertex);
+  }
+
+  public boolean isIncomingEmpty(Object vertex) {
+    return current.isIncomingEmpty(vertex);
+  }
+}
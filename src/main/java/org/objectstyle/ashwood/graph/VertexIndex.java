@@ -0,0 +1,180 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph;
+
+import java.util.*;
+import java.io.Serializable;
+import org.apache.commons.collections.*;
+
+/**
+ * Dictionary assigning dense int ids 0..size()-1 to vertex objects in the
+ * order they are added. Lookups go through an open addressing table of
+ * primitive ids, so no Integer objects are created.
+ */
+public class VertexIndex implements Serializable {
+  private Object[] vertices;
+  private Object[] keys;
+  private int[] ids;
+  private int size;
+
+  public VertexIndex() {
+    this(16);
+  }
+
+  public VertexIndex(int expectedSize) {
+    vertices = new Object[Math.max(expectedSize, 4)];
+    int capacity = 8;
+    while (capacity < expectedSize * 2) capacity <<= 1;
+    keys = new Object[capacity];
+    ids = new int[capacity];
+  }
+
+  /**
+   * Returns the id of the vertex, registering it first if necessary.
+   */
+  public int add(Object vertex) {
+    int slot = slot(vertex);
+    if (keys[slot] != null) return ids[slot];
+    if (size == vertices.length) {
+      Object[] tmp = new Object[vertices.length * 2];
+      System.arraycopy(vertices, 0, tmp, 0, size);
+      vertices = tmp;
+    }
+    vertices[size] = vertex;
+    keys[slot] = vertex;
+    ids[slot] = size;
+    if (++size * 2 > keys.length) rehash();
+    return size - 1;
+  }
+
+  /**
+   * Removes the vertex and moves the last registered vertex into the freed
+   * id so that ids stay dense. Returns the freed id or -1 if the vertex was
+   * not registered.
+   */
+  public int remove(Object vertex) {
+    if (vertex == null) return -1;
+    int slot = slot(vertex);
+    if (keys[slot] == null) return -1;
+    int id = ids[slot];
+    int mask = keys.length - 1;
+    int hole = slot;
+    for (int i = (slot + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+      int home = home(keys[i]);
+      boolean reachable = (hole <= i ? home > hole && home <= i : home > hole || home <= i);
+      if (!reachable) {
+        keys[hole] = keys[i];
+        ids[hole] = ids[i];
+        hole = i;
+      }
+    }
+    keys[hole] = null;
+    int last = --size;
+    if (id != last) {
+      vertices[id] = vertices[last];
+      ids[slot(vertices[id])] = id;
+    }
+    vertices[last] = null;
+    return id;
+  }
+
+  public void addAll(Iterator vertices) {
+    while (vertices.hasNext()) add(vertices.next());
+  }
+
+  /**
+   * Returns the id of the vertex or -1 if it is not registered.
+   */
+  public int indexOf(Object vertex) {
+    if (vertex == null) return -1;
+    int slot = slot(vertex);
+    return (keys[slot] != null ? ids[slot] : -1);
+  }
+
+  public boolean contains(Object vertex) {
+    return indexOf(vertex) >= 0;
+  }
+
+  public Object vertexAt(int index) {
+    if (index >= size) throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+    return vertices[index];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public Iterator iterator() {
+    return IteratorUtils.arrayIterator(vertices, 0, size);
+  }
+
+  public Object[] toArray() {
+    Object[] result = new Object[size];
+    System.arraycopy(vertices, 0, result, 0, size);
+    return result;
+  }
+
+  private int slot(Object vertex) {
+    if (vertex == null) throw new NullPointerException("null vertex");
+    int mask = keys.length - 1;
+    int slot = home(vertex);
+    while (keys[slot] != null && !keys[slot].equals(vertex))
+      slot = (slot + 1) & mask;
+    return slot;
+  }
+
+  private int home(Object vertex) {
+    int h = vertex.hashCode() * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & (keys.length - 1);
+  }
+
+  private void rehash() {
+    keys = new Object[keys.length * 2];
+    ids = new int[keys.length];
+    for (int i = 0; i < size; i++) {
+      int slot = slot(vertices[i]);
+      keys[slot] = vertices[i];
+      ids[slot] = i;
+    }
+  }
+}
@@ -107,7 +107,7 @@ public class SugiyamaLayout extends DigraphLayout {
 	}
 
 	private void createWrapperDigraph() {
-		wrapperDigraph = new MapDigraph(MapDigraph.HASHMAP_FACTORY);
+		wrapperDigraph = new MapDigraph(MapDigraph.HASHMAP_FACTORY, true);
 		vertexWrapperMap = new HashMap(digraph.order());
 		for (Iterator i = digraph.vertexIterator(); i.hasNext();) {
 			Object vertex = i.next();
@@ -1,6 +1,7 @@
 package org.objectstyle.ashwood.graph.layout;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import org.objectstyle.ashwood.graph.*;
 import org.objectstyle.ashwood.util.*;
 
@@ -12,23 +13,45 @@ public class TopologicalRankFunction implements RankFunction {
     init(digraph);
   }
 
+  /**
+   * Ranks a snapshot of the digraph with a ParallelWavefront on the pool;
+   * the ranks are the same as with the sequential constructor.
+   */
+  public TopologicalRankFunction(Digraph digraph, ForkJoinPool pool) {
+    CsrDigraph csr = CsrDigraph.copyOf(digraph);
+    ParallelWavefront wavefront = new ParallelWavefront(csr, pool);
+    if (!wavefront.isComplete())
+      throw new ArithmeticException("Ranking failed.");
+    int[][] layers = wavefront.getLayers();
+    vertexRankMap = new HashMap(digraph.order());
+    for (int rank = 0; rank < layers.length; rank++) {
+      for (int i = 0; i < layers[rank].length; i++)
+        assignRank(csr.vertexAt(layers[rank][i]), rank);
+    }
+  }
+
   private void init(Digraph digraph) {
     vertexRankMap = new HashMap(digraph.order());
+    //rank of a vertex is final when the sort returns it, push it forward
+    Map candidateRanks = new HashMap(digraph.order());
     IndegreeTopologicalSort traversal = new IndegreeTopologicalSort(digraph);
     while (traversal.hasNext()) {
       Object vertex = traversal.next();
-      int rank = -1;
-      for (ArcIterator i = digraph.incomingIterator(vertex); i.hasNext(); ) {
+      MutableInteger candidate = (MutableInteger)candidateRanks.remove(vertex);
+      int rank = (candidate != null ? candidate.intValue() : 0);
+      assignRank(vertex, rank);
+      for (ArcIterator i = digraph.outgoingIterator(vertex); i.hasNext(); ) {
         i.next();
-        Object predecessor = i.getOrigin();
-        int predRank = intValue(predecessor);
-        if (predRank < 0)
-          throw new ArithmeticException("Ranking failed.");
-        rank = Math.max(rank, predRank);
+        Object successor = i.getDestination();
+        MutableInteger successorRank = (MutableInteger)candidateRanks.get(successor);
+        if (successorRank == null)
+          candidateRanks.put(successor, new MutableInteger(rank + 1));
+        else if (successorRank.intValue() <= rank)
+          successorRank.setValue(rank + 1);
       }
-      rank++;
-      assignRank(vertex, rank);
     }
+    if (!traversal.getRemainder().isEmpty())
+      throw new ArithmeticException("Ranking failed.");
   }
 
   public void assignRank(Object vertex, int rank) {
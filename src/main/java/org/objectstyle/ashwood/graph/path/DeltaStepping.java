@@ -0,0 +1,294 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph.path;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.objectstyle.ashwood.function.DoubleFunction;
+import org.objectstyle.ashwood.graph.CsrDigraph;
+
+/**
+ * Parallel single source shortest paths by delta-stepping. Tentative
+ * distances are grouped into buckets of width <code>delta</code>; the
+ * lowest non-empty bucket is settled by repeatedly relaxing the light arcs
+ * (weight up to delta) of its vertices until it stays empty, after which
+ * the heavy arcs of everything it held are relaxed once. Each round of
+ * relaxations runs on a fork/join pool and lowers distances with a
+ * compare-and-set on their bit patterns, which order like the values since
+ * weights are non-negative. The vertices improved by a round are then
+ * filed into a cyclic array of buckets.
+ * <p>
+ * A small delta approaches Dijkstra's order with little parallelism, a large
+ * one approaches Bellman-Ford with much redundant work; the default is the
+ * largest weight divided by the average out-degree.
+ */
+public class DeltaStepping {
+  public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 256;
+  private static final int MAX_BUCKETS = 1 << 20;
+  private static final long INFINITY_BITS = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+
+  private CsrDigraph digraph;
+  private double[] weights;
+  private double maxWeight;
+  private ForkJoinPool pool;
+  private double delta;
+  private int sequentialThreshold = DEFAULT_SEQUENTIAL_THRESHOLD;
+
+  private AtomicLongArray distanceBits;
+  private double[] distances;
+  private int[] parents;
+  private int source = -1;
+
+  public DeltaStepping(CsrDigraph digraph, DoubleFunction weightFunction) {
+    this(digraph, weightFunction, ForkJoinPool.commonPool());
+  }
+
+  public DeltaStepping(CsrDigraph digraph, DoubleFunction weightFunction, ForkJoinPool pool) {
+    this.digraph = digraph;
+    this.pool = pool;
+    weights = ShortestPathSearch.arcWeights(digraph, weightFunction);
+    for (int k = 0; k < weights.length; k++) maxWeight = Math.max(maxWeight, weights[k]);
+    int order = Math.max(digraph.order(), 1);
+    delta = (maxWeight > 0 ? maxWeight * order / Math.max(weights.length, 1) : 1);
+    distanceBits = new AtomicLongArray(digraph.order());
+  }
+
+  public double getDelta() {
+    return delta;
+  }
+
+  /**
+   * Sets the bucket width; it is raised if needed to keep the number of
+   * buckets spanned by the largest weight below 2^20.
+   */
+  public void setDelta(double delta) {
+    if (!(delta > 0)) throw new IllegalArgumentException("delta=" + delta);
+    this.delta = Math.max(delta, maxWeight / (MAX_BUCKETS - 2));
+  }
+
+  /**
+   * Sets the number of frontier vertices up to which a round is relaxed by
+   * a single task.
+   */
+  public void setSequentialThreshold(int sequentialThreshold) {
+    this.sequentialThreshold = Math.max(1, sequentialThreshold);
+  }
+
+  /**
+   * Computes and returns the distances from the source, positive infinity
+   * for unreachable vertices. The array is owned by this object.
+   */
+  public double[] search(int source) {
+    int order = digraph.order();
+    this.source = source;
+    parents = null;
+    for (int v = 0; v < order; v++) distanceBits.set(v, INFINITY_BITS);
+    int bucketCount = (int)Math.ceil(maxWeight / delta) + 2;
+    IntBag[] buckets = new IntBag[bucketCount];
+    for (int b = 0; b < bucketCount; b++) buckets[b] = new IntBag();
+    int[] stamps = new int[order];
+    int stamp = 0;
+    boolean[] settled = new boolean[order];
+
+    distanceBits.set(source, Double.doubleToLongBits(0));
+    buckets[0].add(source);
+    long pending = 1;
+    IntBag frontier = new IntBag();
+    IntBag removed = new IntBag();
+    List improved = Collections.synchronizedList(new ArrayList());
+    for (long bucket = 0; pending > 0; bucket++) {
+      IntBag slot = buckets[(int)(bucket % bucketCount)];
+      if (slot.size == 0) continue;
+      removed.clear();
+      while (slot.size > 0) {
+        pending -= slot.size;
+        stamp++;
+        frontier.clear();
+        for (int i = 0; i < slot.size; i++) {
+          int v = slot.items[i];
+          if (stamps[v] == stamp || bucketOf(v) != bucket) continue;
+          stamps[v] = stamp;
+          frontier.add(v);
+          if (!settled[v]) {
+            settled[v] = true;
+            removed.add(v);
+          }
+        }
+        slot.clear();
+        relax(frontier, true, improved);
+        pending += file(improved, buckets, stamps, ++stamp);
+      }
+      relax(removed, false, improved);
+      pending += file(improved, buckets, stamps, ++stamp);
+      for (int i = 0; i < removed.size; i++) settled[removed.items[i]] = false;
+    }
+    if (distances == null) distances = new double[order];
+    for (int v = 0; v < order; v++) distances[v] = Double.longBitsToDouble(distanceBits.get(v));
+    return distances;
+  }
+
+  public double[] getDistances() {
+    return distances;
+  }
+
+  /**
+   * Returns a shortest path tree of the last search as parent indices, -1
+   * for the source and unreachable vertices. It is built on first request
+   * by a breadth first pass over the arcs whose weight equals the distance
+   * difference of their ends.
+   */
+  public int[] getParents() {
+    if (parents != null || source < 0) return parents;
+    int order = digraph.order();
+    parents = new int[order];
+    Arrays.fill(parents, -1);
+    boolean[] reached = new boolean[order];
+    int[] queue = new int[order];
+    int head = 0, tail = 0;
+    queue[tail++] = source;
+    reached[source] = true;
+    while (head < tail) {
+      int v = queue[head++];
+      for (int k = digraph.outStart(v), end = digraph.outEnd(v); k < end; k++) {
+        int w = digraph.arcTarget(k);
+        if (!reached[w] && distances[v] + weights[k] == distances[w]) {
+          reached[w] = true;
+          parents[w] = v;
+          queue[tail++] = w;
+        }
+      }
+    }
+    return parents;
+  }
+
+  private long bucketOf(int vertex) {
+    return (long)(Double.longBitsToDouble(distanceBits.get(vertex)) / delta);
+  }
+
+  private void relax(IntBag vertices, boolean light, List improved) {
+    if (vertices.size == 0) return;
+    RelaxTask task = new RelaxTask(vertices.items, 0, vertices.size, light, improved);
+    if (vertices.size <= sequentialThreshold) task.compute();
+    else pool.invoke(task);
+  }
+
+  //files the improved vertices into their buckets, each once; returns the count
+  private int file(List improved, IntBag[] buckets, int[] stamps, int stamp) {
+    int count = 0;
+    for (int j = 0; j < improved.size(); j++) {
+      IntBag bag = (IntBag)improved.get(j);
+      for (int i = 0; i < bag.size; i++) {
+        int w = bag.items[i];
+        if (stamps[w] == stamp) continue;
+        stamps[w] = stamp;
+        buckets[(int)(bucketOf(w) % buckets.length)].add(w);
+        count++;
+      }
+    }
+    improved.clear();
+    return count;
+  }
+
+  private class RelaxTask extends RecursiveAction {
+    private int[] vertices;
+    private int from, to;
+    private boolean light;
+    private List improved;
+
+    RelaxTask(int[] vertices, int from, int to, boolean light, List improved) {
+      this.vertices = vertices;
+      this.from = from;
+      this.to = to;
+      this.light = light;
+      this.improved = improved;
+    }
+
+    protected void compute() {
+      if (to - from > sequentialThreshold) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new RelaxTask(vertices, from, middle, light, improved),
+                  new RelaxTask(vertices, middle, to, light, improved));
+        return;
+      }
+      IntBag bag = new IntBag();
+      for (int j = from; j < to; j++) {
+        int v = vertices[j];
+        double distance = Double.longBitsToDouble(distanceBits.get(v));
+        for (int k = digraph.outStart(v), end = digraph.outEnd(v); k < end; k++) {
+          if ((weights[k] <= delta) != light) continue;
+          int w = digraph.arcTarget(k);
+          long candidate = Double.doubleToLongBits(distance + weights[k]);
+          while (true) {
+            long current = distanceBits.get(w);
+            if (candidate >= current) break;
+            if (distanceBits.compareAndSet(w, current, candidate)) {
+              bag.add(w);
+              break;
+            }
+          }
+        }
+      }
+      if (bag.size > 0) improved.add(bag);
+    }
+  }
+
+  private static class IntBag {
+    int[] items = new int[16];
+    int size;
+
+    void add(int item) {
+      if (size == items.length) {
+        int[] tmp = new int[size * 2];
+        System.arraycopy(items, 0, tmp, 0, size);
+        items = tmp;
+      }
+      items[size++] = item;
+    }
+
+    void clear() {
+      size = 0;
+    }
+  }
+}
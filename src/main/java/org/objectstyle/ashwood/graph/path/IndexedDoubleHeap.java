@@ -0,0 +1,173 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph.path;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Indexed d-ary min-heap of int items 0..capacity-1 keyed by doubles, kept
+ * in primitive arrays. Every item knows its position in the heap, so its
+ * key can be decreased in O(log_d n) without searching. A larger arity makes
+ * the heap shallower, which pays off when decreases outnumber removals.
+ */
+public class IndexedDoubleHeap {
+  public static final int DEFAULT_ARITY = 4;
+
+  private int arity;
+  private int[] heap;
+  private int[] positions;
+  private double[] keys;
+  private int size;
+
+  public IndexedDoubleHeap(int capacity) {
+    this(capacity, DEFAULT_ARITY);
+  }
+
+  public IndexedDoubleHeap(int capacity, int arity) {
+    if (arity < 2) throw new IllegalArgumentException("arity=" + arity);
+    this.arity = arity;
+    heap = new int[capacity];
+    positions = new int[capacity];
+    keys = new double[capacity];
+    Arrays.fill(positions, -1);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean contains(int item) {
+    return positions[item] >= 0;
+  }
+
+  public double getKey(int item) {
+    return keys[item];
+  }
+
+  /**
+   * Inserts the item or, if it is already in the heap with a larger key,
+   * decreases its key. Returns false if nothing changed.
+   */
+  public boolean update(int item, double key) {
+    int position = positions[item];
+    if (position < 0) {
+      position = size++;
+      heap[position] = item;
+      positions[item] = position;
+    } else if (key >= keys[item]) return false;
+    keys[item] = key;
+    siftUp(position);
+    return true;
+  }
+
+  public int peek() {
+    if (size == 0) throw new NoSuchElementException();
+    return heap[0];
+  }
+
+  public double peekKey() {
+    if (size == 0) throw new NoSuchElementException();
+    return keys[heap[0]];
+  }
+
+  /**
+   * Removes and returns the item with the smallest key.
+   */
+  public int poll() {
+    if (size == 0) throw new NoSuchElementException();
+    int top = heap[0];
+    positions[top] = -1;
+    if (--size > 0) {
+      int last = heap[size];
+      heap[0] = last;
+      positions[last] = 0;
+      siftDown(0);
+    }
+    return top;
+  }
+
+  public void clear() {
+    for (int i = 0; i < size; i++) positions[heap[i]] = -1;
+    size = 0;
+  }
+
+  private void siftUp(int position) {
+    int item = heap[position];
+    double key = keys[item];
+    while (position > 0) {
+      int parentPosition = (position - 1) / arity;
+      int parent = heap[parentPosition];
+      if (keys[parent] <= key) break;
+      heap[position] = parent;
+      positions[parent] = position;
+      position = parentPosition;
+    }
+    heap[position] = item;
+    positions[item] = position;
+  }
+
+  private void siftDown(int position) {
+    int item = heap[position];
+    double key = keys[item];
+    while (true) {
+      int first = position * arity + 1;
+      if (first >= size) break;
+      int last = Math.min(first + arity, size);
+      int best = first;
+      for (int c = first + 1; c < last; c++)
+        if (keys[heap[c]] < keys[heap[best]]) best = c;
+      if (keys[heap[best]] >= key) break;
+      int child = heap[best];
+      heap[position] = child;
+      positions[child] = position;
+      position = best;
+    }
+    heap[position] = item;
+    positions[item] = position;
+  }
+}
@@ -0,0 +1,318 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.graph.path;
+
+import java.util.Arrays;
+import org.objectstyle.ashwood.function.DoubleFunction;
+import org.objectstyle.ashwood.graph.CsrDigraph;
+
+/**
+ * Shortest paths over a CsrDigraph whose arc weights are computed once from
+ * the arc objects by a DoubleFunction and must be non-negative. Offers
+ * Dijkstra's algorithm from a source to all vertices or, stopping as soon
+ * as the target is settled, to a single target; A* guided by a heuristic;
+ * and bidirectional Dijkstra.
+ * <p>
+ * Results are kept in primitive arrays owned by the search: the distance
+ * of an unreached vertex is positive infinity and its parent -1, and the
+ * parent of the source is -1 as well. Only the entries touched by a search
+ * are reset by the next one, so repeated single-pair queries cost in
+ * proportion to the explored region. An instance is not thread-safe; use
+ * one per thread, they can share the digraph.
+ */
+public class ShortestPathSearch {
+  private CsrDigraph digraph;
+  private double[] weights;
+  //incoming arcs of v: positions inOffsets[v]..inOffsets[v+1]-1 of inWeights
+  private int[] inOffsets;
+  private double[] inWeights;
+  private int arity = IndexedDoubleHeap.DEFAULT_ARITY;
+
+  private double[] distances;
+  private int[] parents;
+  private int[] touched;
+  private int touchedCount;
+  private IndexedDoubleHeap heap;
+
+  //backward side of the bidirectional search
+  private double[] backwardDistances;
+  private int[] successors;
+  private int[] backwardTouched;
+  private int backwardTouchedCount;
+  private IndexedDoubleHeap backwardHeap;
+
+  public ShortestPathSearch(CsrDigraph digraph, DoubleFunction weightFunction) {
+    this.digraph = digraph;
+    weights = arcWeights(digraph, weightFunction);
+    int order = digraph.order();
+    distances = new double[order];
+    parents = new int[order];
+    touched = new int[order];
+    Arrays.fill(distances, Double.POSITIVE_INFINITY);
+    Arrays.fill(parents, -1);
+  }
+
+  /**
+   * Sets the arity of the heaps created from now on.
+   */
+  public void setHeapArity(int arity) {
+    this.arity = arity;
+    heap = null;
+    backwardHeap = null;
+  }
+
+  public CsrDigraph getDigraph() {
+    return digraph;
+  }
+
+  public double[] getDistances() {
+    return distances;
+  }
+
+  public int[] getParents() {
+    return parents;
+  }
+
+  public double getDistance(int vertex) {
+    return distances[vertex];
+  }
+
+  /**
+   * Returns the vertices of the shortest path found to the target, source
+   * first, or null if the target was not reached.
+   */
+  public int[] getPath(int target) {
+    if (distances[target] == Double.POSITIVE_INFINITY) return null;
+    int length = 1;
+    for (int v = parents[target]; v >= 0; v = parents[v]) length++;
+    int[] path = new int[length];
+    for (int v = target; v >= 0; v = parents[v]) path[--length] = v;
+    return path;
+  }
+
+  /**
+   * Computes the distances from the source to all vertices.
+   */
+  public double[] search(int source) {
+    run(source, -1, null);
+    return distances;
+  }
+
+  /**
+   * Returns the distance from the source to the target, stopping as soon as
+   * it is known; positive infinity if the target is unreachable.
+   */
+  public double search(int source, int target) {
+    run(source, target, null);
+    return distances[target];
+  }
+
+  /**
+   * A* search: <code>heuristic.doubleValue(vertex)</code> must estimate the
+   * remaining distance from the vertex object to the target without ever
+   * overestimating it. Vertices are reopened if a shorter path to them turns
+   * up, so the heuristic need not be consistent, though consistent ones
+   * explore less.
+   */
+  public double search(int source, int target, DoubleFunction heuristic) {
+    run(source, target, heuristic);
+    return distances[target];
+  }
+
+  private void run(int source, int target, DoubleFunction heuristic) {
+    reset();
+    IndexedDoubleHeap queue = heap();
+    touch(source, 0, -1);
+    queue.update(source, estimate(source, heuristic));
+    while (!queue.isEmpty()) {
+      int v = queue.poll();
+      if (v == target) break;
+      double distance = distances[v];
+      for (int k = digraph.outStart(v), end = digraph.outEnd(v); k < end; k++) {
+        int w = digraph.arcTarget(k);
+        double candidate = distance + weights[k];
+        if (candidate < distances[w]) {
+          touch(w, candidate, v);
+          queue.update(w, candidate + estimate(w, heuristic));
+        }
+      }
+    }
+    queue.clear();
+  }
+
+  private double estimate(int vertex, DoubleFunction heuristic) {
+    return (heuristic != null ? heuristic.doubleValue(digraph.vertexAt(vertex)) : 0);
+  }
+
+  /**
+   * Bidirectional Dijkstra: searches forward from the source and backward
+   * from the target, always advancing the side with the smaller tentative
+   * distance, and stops once the two frontiers together cannot improve the
+   * best connection found. The parents along the returned path are filled
+   * in, so getPath(target) works as after the other searches.
+   */
+  public double searchBidirectional(int source, int target) {
+    reset();
+    resetBackward();
+    if (source == target) {
+      touch(source, 0, -1);
+      return 0;
+    }
+    IndexedDoubleHeap forward = heap();
+    IndexedDoubleHeap backward = backwardHeap;
+    touch(source, 0, -1);
+    forward.update(source, 0);
+    touchBackward(target, 0, -1);
+    backward.update(target, 0);
+    double best = Double.POSITIVE_INFINITY;
+    int meeting = -1;
+    while (!forward.isEmpty() && !backward.isEmpty()) {
+      if (forward.peekKey() + backward.peekKey() >= best) break;
+      if (forward.peekKey() <= backward.peekKey()) {
+        int v = forward.poll();
+        for (int k = digraph.outStart(v), end = digraph.outEnd(v); k < end; k++) {
+          int w = digraph.arcTarget(k);
+          double candidate = distances[v] + weights[k];
+          if (candidate < distances[w]) {
+            touch(w, candidate, v);
+            forward.update(w, candidate);
+            if (candidate + backwardDistances[w] < best) {
+              best = candidate + backwardDistances[w];
+              meeting = w;
+            }
+          }
+        }
+      } else {
+        int v = backward.poll();
+        for (int k = inOffsets[v], end = inOffsets[v + 1]; k < end; k++) {
+          int w = digraph.source(v, k - inOffsets[v]);
+          double candidate = backwardDistances[v] + inWeights[k];
+          if (candidate < backwardDistances[w]) {
+            touchBackward(w, candidate, v);
+            backward.update(w, candidate);
+            if (candidate + distances[w] < best) {
+              best = candidate + distances[w];
+              meeting = w;
+            }
+          }
+        }
+      }
+    }
+    forward.clear();
+    backward.clear();
+    if (meeting < 0) return Double.POSITIVE_INFINITY;
+    //continue the forward parent chain along the backward one
+    for (int v = meeting; v != target; v = successors[v]) {
+      int w = successors[v];
+      touch(w, best - backwardDistances[w], v);
+    }
+    return best;
+  }
+
+  private IndexedDoubleHeap heap() {
+    if (heap == null) heap = new IndexedDoubleHeap(digraph.order(), arity);
+    return heap;
+  }
+
+  private void touch(int vertex, double distance, int parent) {
+    if (distances[vertex] == Double.POSITIVE_INFINITY && parents[vertex] < 0)
+      touched[touchedCount++] = vertex;
+    distances[vertex] = distance;
+    parents[vertex] = parent;
+  }
+
+  private void reset() {
+    for (int i = 0; i < touchedCount; i++) {
+      distances[touched[i]] = Double.POSITIVE_INFINITY;
+      parents[touched[i]] = -1;
+    }
+    touchedCount = 0;
+  }
+
+  private void touchBackward(int vertex, double distance, int successor) {
+    if (backwardDistances[vertex] == Double.POSITIVE_INFINITY)
+      backwardTouched[backwardTouchedCount++] = vertex;
+    backwardDistances[vertex] = distance;
+    successors[vertex] = successor;
+  }
+
+  private void resetBackward() {
+    if (backwardDistances == null) {
+      int order = digraph.order();
+      backwardDistances = new double[order];
+      successors = new int[order];
+      backwardTouched = new int[order];
+      Arrays.fill(backwardDistances, Double.POSITIVE_INFINITY);
+      Arrays.fill(successors, -1);
+      inOffsets = new int[order + 1];
+      for (int v = 0; v < order; v++) inOffsets[v + 1] = inOffsets[v] + digraph.inDegree(v);
+      inWeights = new double[inOffsets[order]];
+      for (int v = 0; v < order; v++) {
+        for (int i = 0; i < digraph.inDegree(v); i++)
+          inWeights[inOffsets[v] + i] = weights[digraph.arcPosition(digraph.source(v, i), v)];
+      }
+    }
+    if (backwardHeap == null) backwardHeap = new IndexedDoubleHeap(digraph.order(), arity);
+    for (int i = 0; i < backwardTouchedCount; i++) {
+      backwardDistances[backwardTouched[i]] = Double.POSITIVE_INFINITY;
+      successors[backwardTouched[i]] = -1;
+    }
+    backwardTouchedCount = 0;
+  }
+
+  /**
+   * Evaluates the weight function on every arc, by CSR arc position.
+   *
+   * @throws IllegalArgumentException if a weight is negative or NaN
+   */
+  static double[] arcWeights(CsrDigraph digraph, DoubleFunction weightFunction) {
+    double[] weights = new double[digraph.size()];
+    for (int k = 0; k < weights.length; k++) {
+      double weight = weightFunction.doubleValue(digraph.arcAt(k));
+      if (!(weight >= 0))
+        throw new IllegalArgumentException("Invalid arc weight " + weight + " at " + k);
+      weights[k] = weight;
+    }
+    return weights;
+  }
+}
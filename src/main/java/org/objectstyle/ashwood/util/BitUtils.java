@@ -0,0 +1,156 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.util;
+
+/**
+ * Static helpers for bit sets packed into <code>long[]</code> words, bit
+ * <code>i</code> living in word <code>i &gt;&gt;&gt; 6</code>.
+ */
+public class BitUtils {
+  private BitUtils() {}
+
+  public static int wordCount(int bitCount) {
+    return (bitCount + 63) >>> 6;
+  }
+
+  public static long[] create(int bitCount) {
+    return new long[wordCount(bitCount)];
+  }
+
+  public static boolean get(long[] bits, int index) {
+    return (bits[index >>> 6] & (1L << index)) != 0;
+  }
+
+  public static void set(long[] bits, int index) {
+    bits[index >>> 6] |= (1L << index);
+  }
+
+  public static void clear(long[] bits, int index) {
+    bits[index >>> 6] &= ~(1L << index);
+  }
+
+  /**
+   * Sets the bit and returns true if it was clear before.
+   */
+  public static boolean add(long[] bits, int index) {
+    int word = index >>> 6;
+    long mask = 1L << index;
+    if ((bits[word] & mask) != 0) return false;
+    bits[word] |= mask;
+    return true;
+  }
+
+  public static int cardinality(long[] bits) {
+    int count = 0;
+    for (int i = 0; i < bits.length; i++) count += Long.bitCount(bits[i]);
+    return count;
+  }
+
+  /**
+   * Returns the index of the first set bit at or after <code>fromIndex</code>,
+   * or -1 if there is none.
+   */
+  public static int nextSetBit(long[] bits, int fromIndex) {
+    int word = fromIndex >>> 6;
+    if (word >= bits.length) return -1;
+    long w = bits[word] & (-1L << fromIndex);
+    while (true) {
+      if (w != 0) return (word << 6) + Long.numberOfTrailingZeros(w);
+      if (++word == bits.length) return -1;
+      w = bits[word];
+    }
+  }
+
+  /**
+   * Sets <code>target</code> to <code>target | source</code> and returns
+   * true if any bit of <code>target</code> changed.
+   */
+  public static boolean or(long[] target, long[] source) {
+    long changed = 0;
+    int n = Math.min(target.length, source.length);
+    for (int i = 0; i < n; i++) {
+      long w = target[i] | source[i];
+      changed |= w ^ target[i];
+      target[i] = w;
+    }
+    return changed != 0;
+  }
+
+  public static void and(long[] target, long[] source) {
+    int n = Math.min(target.length, source.length);
+    for (int i = 0; i < n; i++) target[i] &= source[i];
+    for (int i = n; i < target.length; i++) target[i] = 0;
+  }
+
+  public static void andNot(long[] target, long[] source) {
+    int n = Math.min(target.length, source.length);
+    for (int i = 0; i < n; i++) target[i] &= ~source[i];
+  }
+
+  /**
+   * Returns the cardinality of <code>a &amp; b</code> without materializing it.
+   */
+  public static int intersectionCount(long[] a, long[] b) {
+    int count = 0;
+    int n = Math.min(a.length, b.length);
+    for (int i = 0; i < n; i++) count += Long.bitCount(a[i] & b[i]);
+    return count;
+  }
+
+  /**
+   * Returns the index of the <code>n</code>-th (0-based) set bit or -1 if
+   * there are fewer set bits.
+   */
+  public static int select(long[] bits, int n) {
+    for (int word = 0; word < bits.length; word++) {
+      int count = Long.bitCount(bits[word]);
+      if (n < count) {
+        long w = bits[word];
+        for (; n > 0; n--) w &= w - 1;
+        return (word << 6) + Long.numberOfTrailingZeros(w);
+      }
+      n -= count;
+    }
+    return -1;
+  }
+}
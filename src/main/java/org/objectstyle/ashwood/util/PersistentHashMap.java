@@ -0,0 +1,338 @@
+/* ====================================================================
+ *
+ * Copyright(c) 2003, Andriy Shapochka
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above
+ *    copyright notice, this list of conditions and the following
+ *    disclaimer in the documentation and/or other materials
+ *    provided with the distribution.
+ *
+ * 3. Neither the name of the ASHWOOD nor the
+ *    names of its contributors may be used to endorse or
+ *    promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by
+ * individuals on behalf of the ASHWOOD Project and was originally
+ * created by Andriy Shapochka.
+ *
+ */
+
+package org.objectstyle.ashwood.util;
+
+import java.util.*;
+import java.io.Serializable;
+import org.apache.commons.collections.MapIterator;
+
+/**
+ * Immutable hash map implemented as a hash array mapped trie. put() and
+ * remove() return a new map that shares every node off the modified path
+ * with the old one, so an update costs O(log32 n) time and space and any
+ * map instance can be kept as a snapshot for free. Null keys and values are
+ * not supported.
+ */
+public final class PersistentHashMap implements Serializable {
+  public static final PersistentHashMap EMPTY = new PersistentHashMap(0, null);
+
+  private final int size;
+  private final Node root;
+
+  private PersistentHashMap(int size, Node root) {
+    this.size = size;
+    this.root = root;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public Object get(Object key) {
+    if (root == null || key == null) return null;
+    return root.find(0, hash(key), key);
+  }
+
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  public PersistentHashMap put(Object key, Object value) {
+    if (key == null || value == null) throw new NullPointerException("null key or value");
+    boolean[] added = new boolean[1];
+    Node node = (root != null ? root : BitmapNode.EMPTY);
+    Node newRoot = node.assoc(0, hash(key), key, value, added);
+    if (newRoot == root) return this;
+    return new PersistentHashMap(added[0] ? size + 1 : size, newRoot);
+  }
+
+  public PersistentHashMap remove(Object key) {
+    if (root == null || key == null) return this;
+    Node newRoot = root.without(0, hash(key), key);
+    if (newRoot == root) return this;
+    return (newRoot == null ? EMPTY : new PersistentHashMap(size - 1, newRoot));
+  }
+
+  /**
+   * Returns an iterator over the keys; getValue() gives the value of the
+   * key last returned by next().
+   */
+  public MapIterator mapIterator() {
+    return new TrieIterator(root);
+  }
+
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private static Object[] cloneAndSet(Object[] array, int i, Object a) {
+    Object[] clone = array.clone();
+    clone[i] = a;
+    return clone;
+  }
+
+  private static Object[] removePair(Object[] array, int i) {
+    Object[] result = new Object[array.length - 2];
+    System.arraycopy(array, 0, result, 0, 2 * i);
+    System.arraycopy(array, 2 * (i + 1), result, 2 * i, result.length - 2 * i);
+    return result;
+  }
+
+  //array holds key/value pairs; a null key marks a pair whose value is a child node
+  private abstract static class Node implements Serializable {
+    final Object[] array;
+
+    Node(Object[] array) {
+      this.array = array;
+    }
+
+    abstract Object find(int shift, int hash, Object key);
+    abstract Node assoc(int shift, int hash, Object key, Object value, boolean[] added);
+    abstract Node without(int shift, int hash, Object key);
+  }
+
+  private static final class BitmapNode extends Node {
+    static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+    final int bitmap;
+
+    BitmapNode(int bitmap, Object[] array) {
+      super(array);
+      this.bitmap = bitmap;
+    }
+
+    private int index(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    Object find(int shift, int hash, Object key) {
+      int bit = 1 << ((hash >>> shift) & 31);
+      if ((bitmap & bit) == 0) return null;
+      int i = index(bit);
+      Object k = array[2 * i];
+      Object v = array[2 * i + 1];
+      if (k == null) return ((Node)v).find(shift + 5, hash, key);
+      return (key.equals(k) ? v : null);
+    }
+
+    Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+      int bit = 1 << ((hash >>> shift) & 31);
+      int i = index(bit);
+      if ((bitmap & bit) != 0) {
+        Object k = array[2 * i];
+        Object v = array[2 * i + 1];
+        if (k == null) {
+          Node n = ((Node)v).assoc(shift + 5, hash, key, value, added);
+          if (n == v) return this;
+          return new BitmapNode(bitmap, cloneAndSet(array, 2 * i + 1, n));
+        }
+        if (key.equals(k)) {
+          if (value == v) return this;
+          return new BitmapNode(bitmap, cloneAndSet(array, 2 * i + 1, value));
+        }
+        added[0] = true;
+        Object[] newArray = cloneAndSet(array, 2 * i, null);
+        newArray[2 * i + 1] = createNode(shift + 5, k, v, hash, key, value);
+        return new BitmapNode(bitmap, newArray);
+      }
+      Object[] newArray = new Object[array.length + 2];
+      System.arraycopy(array, 0, newArray, 0, 2 * i);
+      newArray[2 * i] = key;
+      newArray[2 * i + 1] = value;
+      System.arraycopy(array, 2 * i, newArray, 2 * (i + 1), array.length - 2 * i);
+      added[0] = true;
+      return new BitmapNode(bitmap | bit, newArray);
+    }
+
+    Node without(int shift, int hash, Object key) {
+      int bit = 1 << ((hash >>> shift) & 31);
+      if ((bitmap & bit) == 0) return this;
+      int i = index(bit);
+      Object k = array[2 * i];
+      Object v = array[2 * i + 1];
+      if (k == null) {
+        Node n = ((Node)v).without(shift + 5, hash, key);
+        if (n == v) return this;
+        if (n != null) return new BitmapNode(bitmap, cloneAndSet(array, 2 * i + 1, n));
+      } else if (!key.equals(k)) return this;
+      if (bitmap == bit) return null;
+      return new BitmapNode(bitmap ^ bit, removePair(array, i));
+    }
+
+    private static Node createNode(int shift, Object key1, Object value1,
+                                   int hash2, Object key2, Object value2) {
+      int hash1 = hash(key1);
+      if (hash1 == hash2)
+        return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+      boolean[] added = new boolean[1];
+      return EMPTY.assoc(shift, hash1, key1, value1, added)
+                  .assoc(shift, hash2, key2, value2, added);
+    }
+  }
+
+  private static final class CollisionNode extends Node {
+    final int hash;
+
+    CollisionNode(int hash, Object[] array) {
+      super(array);
+      this.hash = hash;
+    }
+
+    private int indexOf(Object key) {
+      for (int i = 0; i < array.length; i += 2)
+        if (key.equals(array[i])) return i;
+      return -1;
+    }
+
+    Object find(int shift, int hash, Object key) {
+      int i = indexOf(key);
+      return (i >= 0 ? array[i + 1] : null);
+    }
+
+    Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+      if (hash == this.hash) {
+        int i = indexOf(key);
+        if (i >= 0) {
+          if (array[i + 1] == value) return this;
+          return new CollisionNode(hash, cloneAndSet(array, i + 1, value));
+        }
+        Object[] newArray = new Object[array.length + 2];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        newArray[array.length] = key;
+        newArray[array.length + 1] = value;
+        added[0] = true;
+        return new CollisionNode(hash, newArray);
+      }
+      int bit = 1 << ((this.hash >>> shift) & 31);
+      return new BitmapNode(bit, new Object[] {null, this})
+          .assoc(shift, hash, key, value, added);
+    }
+
+    Node without(int shift, int hash, Object key) {
+      int i = indexOf(key);
+      if (i < 0) return this;
+      if (array.length == 2) return null;
+      return new CollisionNode(hash, removePair(array, i / 2));
+    }
+  }
+
+  private static final class TrieIterator implements MapIterator {
+    private Object[][] arrays = new Object[8][];
+    private int[] positions = new int[8];
+    private int depth;
+    private Object key, value;
+    private Object nextKey, nextValue;
+
+    TrieIterator(Node root) {
+      if (root != null) {
+        arrays[0] = root.array;
+        depth = 1;
+      }
+      advance();
+    }
+
+    private void advance() {
+      nextKey = null;
+      while (depth > 0) {
+        int top = depth - 1;
+        Object[] array = arrays[top];
+        int position = positions[top];
+        if (position >= array.length) {
+          arrays[top] = null;
+          positions[top] = 0;
+          depth--;
+          continue;
+        }
+        positions[top] = position + 2;
+        Object k = array[position];
+        Object v = array[position + 1];
+        if (k != null) {
+          nextKey = k;
+          nextValue = v;
+          return;
+        }
+        if (depth == arrays.length) {
+          Object[][] tmp = new Object[depth * 2][];
+          System.arraycopy(arrays, 0, tmp, 0, depth);
+          arrays = tmp;
+          int[] tmpPositions = new int[depth * 2];
+          System.arraycopy(positions, 0, tmpPositions, 0, depth);
+          positions = tmpPositions;
+        }
+        arrays[depth] = ((Node)v).array;
+        positions[depth] = 0;
+        depth++;
+      }
+    }
+
+    public boolean hasNext() {
+      return nextKey != null;
+    }
+    public Object next() {
+      if (nextKey == null) throw new NoSuchElementException();
+      key = nextKey;
+      value = nextValue;
+      advance();
+      return key;
+    }
+    public Object getKey() {
+      if (key == null) throw new IllegalStateException();
+      return key;
+    }
+    public Object getValue() {
+      if (key == null) throw new IllegalStateException();
+      return value;
+    }
+    public void remove() {
+      throw new UnsupportedOperationException("PersistentHashMap is immutable.");
+    }
+    public Object setValue(Object value) {
+      throw new UnsupportedOperationException("PersistentHashMap is immutable.");
+    }
+  }
+}